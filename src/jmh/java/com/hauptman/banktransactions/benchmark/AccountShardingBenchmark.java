@@ -0,0 +1,101 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionFeed;
+import com.hauptman.banktransactions.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transaction creation with the accounts behind stripe locks, split across shard writers or fed through the
+ * single-writer pipeline, under a uniform and a Zipf-skewed choice of account. {@code writers} is the mode and
+ * its number of shards. Run with many threads, e.g. {@code -t 32}, so the few hot accounts of the skewed
+ * workload are actually contended.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class AccountShardingBenchmark {
+
+    private static final Money BALANCE = Money.of("1000000000000.00");
+
+    @Param({"locks", "shards-4", "shards-16", "pipeline-4", "pipeline-16"})
+    public String writers;
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({Workload.UNIFORM, Workload.ZIPF})
+    public String skew;
+
+    private AccountService accountService;
+    private TransactionService transactionService;
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WriteAheadLog writeAheadLog = new NoOpWriteAheadLog();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        int shards = writers.startsWith("shards-") ? Integer.parseInt(writers.substring("shards-".length())) : 0;
+        int pipelineShards = writers.startsWith("pipeline-") ? Integer.parseInt(writers.substring("pipeline-".length())) : 0;
+        accountService = new AccountService(new InMemoryAccountRepository(writeAheadLog), writeAheadLog, shards,
+                meterRegistry);
+        transactionService = new TransactionService(new InMemoryTransactionRepository(writeAheadLog), accountService,
+                new TransactionFeed(10_000, 1000, 1000, writeAheadLog, meterRegistry), 1000,
+                1000, pipelineShards, 1024, 0, 60000, Clock.systemDefaultZone(), meterRegistry);
+        workload = new Workload(accounts, skew);
+        for (int i = 0; i < accounts; i++) {
+            accountService.createAccount(workload.account(i, BALANCE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        transactionService.close();
+        accountService.close();
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+    }
+
+    @Benchmark
+    public Transaction createTransaction(ThreadState state) {
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban(workload.iban(state.random));
+        request.setAmount(BigDecimal.valueOf(100 + state.random.nextInt(100_000), 2));
+        request.setFee(BigDecimal.valueOf(state.random.nextInt(300), 2));
+        request.setDescription("");
+        return transactionService.createTransaction(request);
+    }
+
+}
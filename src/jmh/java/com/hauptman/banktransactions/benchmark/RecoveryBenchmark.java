@@ -0,0 +1,119 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.persistence.FileWriteAheadLog;
+import com.hauptman.banktransactions.persistence.SnapshotManager;
+import com.hauptman.banktransactions.repository.AccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time to rebuild the repositories on startup from the newest snapshot plus the write-ahead log written after
+ * it. {@code tailPercent} is the share of transactions that only exist in the log.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g"})
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    private static final Money BALANCE = Money.of("1000.00");
+
+    @Param({"1000000", "10000000"})
+    public int size;
+
+    @Param({"10"})
+    public int tailPercent;
+
+    @Param({"10000"})
+    public int accounts;
+
+    private Path directory;
+    private FileWriteAheadLog recovering;
+
+    @Setup(Level.Trial)
+    public void write() throws Exception {
+        directory = Files.createTempDirectory("recovery-benchmark");
+        FileWriteAheadLog writeAheadLog = new FileWriteAheadLog(walDirectory());
+        TransactionRepository transactionRepository = new InMemoryTransactionRepository(writeAheadLog);
+        AccountRepository accountRepository = new InMemoryAccountRepository(writeAheadLog);
+        writeAheadLog.replay(0, transactionRepository::create, accountRepository::save);
+
+        Workload workload = new Workload(accounts, Workload.UNIFORM);
+        for (int i = 0; i < accounts; i++) {
+            accountRepository.save(workload.account(i, BALANCE));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        long snapshotAt = (long) size * (100 - tailPercent) / 100;
+        for (long i = 0; i < size; i++) {
+            if (i == snapshotAt) {
+                snapshotManager(writeAheadLog, transactionRepository, accountRepository).snapshot();
+            }
+            transactionRepository.create(workload.transaction(i, random));
+        }
+        writeAheadLog.close();
+    }
+
+    @Benchmark
+    public TransactionRepository recover() {
+        recovering = new FileWriteAheadLog(walDirectory());
+        TransactionRepository transactionRepository = new InMemoryTransactionRepository(recovering);
+        AccountRepository accountRepository = new InMemoryAccountRepository(recovering);
+        long lsn = snapshotManager(recovering, transactionRepository, accountRepository)
+                .restore(transactionRepository::create, accountRepository::save);
+        recovering.replay(lsn, transactionRepository::create, accountRepository::save);
+        return transactionRepository;
+    }
+
+    @TearDown(Level.Invocation)
+    public void closeLog() throws Exception {
+        if (recovering != null) {
+            recovering.close();
+            recovering = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private SnapshotManager snapshotManager(FileWriteAheadLog writeAheadLog, TransactionRepository transactionRepository,
+                                            AccountRepository accountRepository) {
+        return new SnapshotManager(directory.resolve("snapshots").toString(), writeAheadLog, transactionRepository,
+                accountRepository);
+    }
+
+    private String walDirectory() {
+        return directory.resolve("wal").toString();
+    }
+
+}
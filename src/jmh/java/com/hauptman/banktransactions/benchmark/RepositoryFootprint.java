@@ -0,0 +1,38 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.repository.ColumnarTransactionRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.repository.TransactionRepository;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.SplittableRandom;
+
+/**
+ * Prints the retained heap per transaction of each repository implementation, measured with JOL rather than
+ * estimated from the field layout. Arguments are the number of transactions and accounts.
+ */
+public final class RepositoryFootprint {
+
+    private RepositoryFootprint() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        report("object", new InMemoryTransactionRepository(new NoOpWriteAheadLog()), size, accounts);
+        report("columnar", new ColumnarTransactionRepository(new NoOpWriteAheadLog()), size, accounts);
+    }
+
+    private static void report(String storage, TransactionRepository repository, int size, int accounts) {
+        Workload workload = new Workload(accounts, Workload.UNIFORM);
+        SplittableRandom random = new SplittableRandom(42);
+        for (long i = 0; i < size; i++) {
+            repository.create(workload.transaction(i, random));
+        }
+        long bytes = GraphLayout.parseInstance(repository).totalSize();
+        System.out.printf("%-8s %,d transactions: %,d bytes, %.1f bytes/transaction%n",
+                storage, size, bytes, (double) bytes / size);
+    }
+
+}
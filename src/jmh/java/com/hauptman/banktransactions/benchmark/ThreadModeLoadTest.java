@@ -0,0 +1,136 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.hauptman.banktransactions.BankTransactionsApplication;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.service.AccountService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Boots the service once on Tomcat's platform thread pool and once on virtual threads, and drives
+ * {@code /transactions/create} and {@code /transactions/status} from many concurrent connections against each,
+ * printing throughput and latency percentiles side by side. Arguments are the number of concurrent connections,
+ * the seconds per run and the number of accounts.
+ */
+public final class ThreadModeLoadTest {
+
+    private static final Money BALANCE = Money.of("1000000000000.00");
+    private static final String[] CHANNELS = {"CLIENT", "ATM", "INTERNAL"};
+
+    private ThreadModeLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int accounts = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        for (boolean virtual : new boolean[]{false, true}) {
+            try (ConfigurableApplicationContext context = SpringApplication.run(BankTransactionsApplication.class,
+                    "--server.port=0", "--spring.threads.virtual.enabled=" + virtual)) {
+                Workload workload = new Workload(accounts, Workload.UNIFORM);
+                AccountService accountService = context.getBean(AccountService.class);
+                for (int i = 0; i < accounts; i++) {
+                    accountService.createAccount(workload.account(i, BALANCE));
+                }
+                String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+                String mode = virtual ? "virtual" : "platform";
+                AtomicLong sequence = new AtomicLong();
+                run(mode, "create", connections, seconds, random -> HttpRequest
+                        .newBuilder(URI.create(baseUrl + "/transactions/create"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                                "{\"reference\":\"%s\",\"accountIban\":\"%s\",\"amount\":%d.%02d,\"fee\":0.50}",
+                                Workload.reference(sequence.getAndIncrement()), workload.iban(random),
+                                1 + random.nextInt(1000), random.nextInt(100))))
+                        .build());
+                long created = sequence.get();
+                run(mode, "status", connections, seconds, random -> HttpRequest
+                        .newBuilder(URI.create(baseUrl + "/transactions/status?reference="
+                                + Workload.reference(random.nextLong(Math.max(created, 1)))
+                                + "&channel=" + CHANNELS[random.nextInt(CHANNELS.length)]))
+                        .GET()
+                        .build());
+            }
+        }
+    }
+
+    private static void run(String mode, String endpoint, int connections, int seconds, RequestFactory requests)
+            throws Exception {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        List<Future<long[]>> results = new ArrayList<>(connections);
+        AtomicLong errors = new AtomicLong();
+        // one virtual thread per client connection, so the load generator itself is not the bottleneck
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                long seed = i;
+                results.add(clients.submit(() -> {
+                    SplittableRandom random = new SplittableRandom(seed);
+                    long[] latencies = new long[1024];
+                    int count = 0;
+                    while (System.nanoTime() < deadline) {
+                        HttpRequest request = requests.create(random);
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 300) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (Exception ex) {
+                            errors.incrementAndGet();
+                        }
+                        if (count == latencies.length) {
+                            latencies = Arrays.copyOf(latencies, count * 2);
+                        }
+                        latencies[count++] = System.nanoTime() - start;
+                    }
+                    return Arrays.copyOf(latencies, count);
+                }));
+            }
+        }
+        long[] all = results.stream().map(ThreadModeLoadTest::join).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("%-8s %-6s %,8d conns %,10.0f req/s  p50 %7.2f ms  p99 %7.2f ms  p99.9 %7.2f ms  max %7.2f ms  errors %,d%n",
+                mode, endpoint, connections, (double) all.length / seconds,
+                percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999),
+                all.length == 0 ? 0 : all[all.length - 1] / 1e6, errors.get());
+    }
+
+    private static long[] join(Future<long[]> result) {
+        try {
+            return result.get();
+        } catch (Exception ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1)] / 1e6;
+    }
+
+    @FunctionalInterface
+    private interface RequestFactory {
+        HttpRequest create(SplittableRandom random);
+    }
+
+}
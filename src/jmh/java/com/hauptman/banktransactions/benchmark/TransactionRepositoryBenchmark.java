@@ -0,0 +1,112 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.repository.ColumnarTransactionRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Repository hot paths against a pre-filled store. Lookup latency should stay flat as {@code size} grows from
+ * 10k to 10M; the largest size needs the 16g heap the fork is started with.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms16g", "-Xmx16g"})
+@State(Scope.Benchmark)
+public class TransactionRepositoryBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"object", "columnar"})
+    public String storage;
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({Workload.UNIFORM, Workload.ZIPF})
+    public String skew;
+
+    private TransactionRepository repository;
+    private Workload workload;
+    private AtomicLong sequence;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        repository = "columnar".equals(storage)
+                ? new ColumnarTransactionRepository(new NoOpWriteAheadLog())
+                : new InMemoryTransactionRepository(new NoOpWriteAheadLog());
+        workload = new Workload(accounts, skew);
+        SplittableRandom random = new SplittableRandom(42);
+        for (long i = 0; i < size; i++) {
+            repository.create(workload.transaction(i, random));
+        }
+        sequence = new AtomicLong(size);
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+        private final List<String> batch = new ArrayList<>(BATCH_SIZE);
+    }
+
+    @Benchmark
+    public Transaction findByReference(ThreadState state) {
+        return repository.findByReference(Workload.reference(state.random.nextInt(size)));
+    }
+
+    @Benchmark
+    public Transaction findByReferenceMissing(ThreadState state) {
+        return repository.findByReference("missing-" + state.random.nextInt(size));
+    }
+
+    @Benchmark
+    public Map<String, Transaction> findByReferences(ThreadState state) {
+        state.batch.clear();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            state.batch.add(Workload.reference(state.random.nextInt(size)));
+        }
+        return repository.findByReferences(state.batch);
+    }
+
+    @Benchmark
+    public List<Transaction> findByAccountIbanFirstPage(ThreadState state) {
+        return repository.findByAccountIban(workload.iban(state.random), state.random.nextBoolean(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Transaction> findByAccountIban(ThreadState state) {
+        return repository.findByAccountIban(workload.iban(state.random), state.random.nextBoolean());
+    }
+
+    @Benchmark
+    public void create(ThreadState state) {
+        repository.create(workload.transaction(sequence.getAndIncrement(), state.random));
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionBatchResult;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.dto.TransactionStatusRequest;
+import com.hauptman.banktransactions.dto.TransactionStatusResponse;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionFeed;
+import com.hauptman.banktransactions.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import util.ChannelType;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service hot paths wired without Spring. Thread count comes from JMH's {@code -t}; {@code skew} decides how
+ * much the threads pile onto the same few accounts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class TransactionServiceBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final Money BALANCE = Money.of("1000000000000.00");
+    private static final ChannelType[] CHANNELS = ChannelType.values();
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({Workload.UNIFORM, Workload.ZIPF})
+    public String skew;
+
+    // 0 turns the status cache off
+    @Param({"0", "100000"})
+    public int statusCacheSize;
+
+    private TransactionService transactionService;
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        WriteAheadLog writeAheadLog = new NoOpWriteAheadLog();
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AccountService accountService = new AccountService(new InMemoryAccountRepository(writeAheadLog), writeAheadLog, 0,
+                meterRegistry);
+        transactionService = new TransactionService(new InMemoryTransactionRepository(writeAheadLog), accountService,
+                new TransactionFeed(10_000, 1000, 1000, writeAheadLog, meterRegistry), 1000,
+                BATCH_SIZE, 0, 1024, statusCacheSize, 60_000, Clock.systemDefaultZone(), meterRegistry);
+        workload = new Workload(accounts, skew);
+        for (int i = 0; i < accounts; i++) {
+            accountService.createAccount(workload.account(i, BALANCE));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < size; i++) {
+            TransactionRequest request = request(random);
+            request.setReference(Workload.reference(i));
+            // a spread of past, today and future dates so every status branch is exercised
+            request.setDate(now.plusHours(random.nextInt(96) - 48));
+            transactionService.createTransaction(request);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+        private final TransactionStatusRequest statusRequest = new TransactionStatusRequest();
+    }
+
+    @Benchmark
+    public Transaction createTransaction(ThreadState state) {
+        return transactionService.createTransaction(request(state.random));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<TransactionBatchResult> createTransactions(ThreadState state) {
+        List<TransactionRequest> requests = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            requests.add(request(state.random));
+        }
+        return transactionService.createTransactions(requests);
+    }
+
+    @Benchmark
+    public TransactionStatusResponse getTransactionStatus(ThreadState state) {
+        state.statusRequest.setReference(Workload.reference(state.random.nextInt(size)));
+        state.statusRequest.setChannel(CHANNELS[state.random.nextInt(CHANNELS.length)]);
+        return transactionService.getTransactionStatus(state.statusRequest);
+    }
+
+    private TransactionRequest request(SplittableRandom random) {
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban(workload.iban(random));
+        request.setAmount(BigDecimal.valueOf(100 + random.nextInt(100_000), 2));
+        request.setFee(BigDecimal.valueOf(random.nextInt(300), 2));
+        request.setDescription("");
+        return request;
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hauptman.banktransactions.config.CborConfiguration;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.dto.TransactionStatusResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import util.TransactionStatusEnum;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding cost of the create, status and search payloads as JSON and as CBOR, with the mappers
+ * configured as the application configures them. The encoded size of each payload is printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+    private static final TypeReference<List<Transaction>> TRANSACTION_LIST = new TypeReference<>() {
+    };
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    private ObjectMapper mapper;
+    private TransactionRequest request;
+    private TransactionStatusResponse status;
+    private List<Transaction> page;
+    private byte[] encodedRequest;
+    private byte[] encodedPage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // the builder as Spring Boot configures it, which writes JSON dates as ISO strings
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        mapper = "cbor".equals(format) ? CborConfiguration.cborMapper(builder) : builder.build();
+
+        Workload workload = new Workload(1000, Workload.UNIFORM);
+        SplittableRandom random = new SplittableRandom(42);
+        page = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            page.add(workload.transaction(i, random));
+        }
+        Transaction transaction = page.get(0);
+        request = new TransactionRequest();
+        request.setReference(transaction.getReference());
+        request.setAccountIban(transaction.getAccountIban());
+        request.setDate(LocalDateTime.now());
+        request.setAmount(transaction.getAmount().toBigDecimal());
+        request.setFee(transaction.getFee().toBigDecimal());
+        request.setDescription("Restaurant payment");
+        status = new TransactionStatusResponse(transaction.getReference(), TransactionStatusEnum.SETTLED,
+                Money.of("193.38"), null);
+
+        encodedRequest = mapper.writeValueAsBytes(request);
+        encodedPage = mapper.writeValueAsBytes(page);
+        System.out.printf("%n%s bytes: request %d, status %d, search page of %d %d%n", format, encodedRequest.length,
+                mapper.writeValueAsBytes(status).length, PAGE_SIZE, encodedPage.length);
+    }
+
+    @Benchmark
+    public TransactionRequest readRequest() throws IOException {
+        return mapper.readValue(encodedRequest, TransactionRequest.class);
+    }
+
+    @Benchmark
+    public byte[] writeTransaction() throws IOException {
+        return mapper.writeValueAsBytes(page.get(0));
+    }
+
+    @Benchmark
+    public byte[] writeStatus() throws IOException {
+        return mapper.writeValueAsBytes(status);
+    }
+
+    @Benchmark
+    public byte[] writeSearchPage() throws IOException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public List<Transaction> readSearchPage() throws IOException {
+        return mapper.readValue(encodedPage, TRANSACTION_LIST);
+    }
+
+}
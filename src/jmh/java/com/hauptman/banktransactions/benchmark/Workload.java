@@ -0,0 +1,68 @@
+package com.hauptman.banktransactions.benchmark;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic benchmark data: account IBANs, a popularity distribution over them and pre-built
+ * transactions, so every run and every storage implementation sees the same dataset.
+ */
+public final class Workload {
+
+    public static final String UNIFORM = "uniform";
+    public static final String ZIPF = "zipf";
+
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final LocalDateTime BASE_DATE = LocalDateTime.of(2023, 1, 1, 0, 0);
+
+    private final String[] ibans;
+    private final double[] cumulative;
+
+    public Workload(int accounts, String skew) {
+        ibans = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ibans[i] = String.format("ES%022d", i);
+        }
+        cumulative = new double[accounts];
+        double total = 0;
+        for (int i = 0; i < accounts; i++) {
+            total += ZIPF.equals(skew) ? 1 / Math.pow(i + 1, ZIPF_EXPONENT) : 1;
+            cumulative[i] = total;
+        }
+        for (int i = 0; i < accounts; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    public String iban(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return ibans[Math.min(index < 0 ? -index - 1 : index, ibans.length - 1)];
+    }
+
+    public String[] ibans() {
+        return ibans;
+    }
+
+    public Account account(int index, Money balance) {
+        return new Account(ibans[index], balance);
+    }
+
+    public Transaction transaction(long sequence, SplittableRandom random) {
+        return new Transaction(
+                reference(sequence),
+                iban(random),
+                BASE_DATE.plusSeconds(sequence),
+                Money.ofMinorUnits(100 + random.nextInt(100_000)),
+                Money.ofMinorUnits(random.nextInt(300)),
+                "");
+    }
+
+    public static String reference(long sequence) {
+        return "ref-" + sequence;
+    }
+}
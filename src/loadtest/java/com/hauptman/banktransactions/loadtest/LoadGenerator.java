@@ -0,0 +1,288 @@
+package com.hauptman.banktransactions.loadtest;
+
+import com.hauptman.banktransactions.BankTransactionsApplication;
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.loadtest.LoadProfile.Operation;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Boots the service on a random local port, preloads accounts and transactions, and drives
+ * {@code /transactions/create}, {@code /transactions/search} and {@code /transactions/status} with a
+ * {@link LoadProfile}. Prints the throughput, errors and HdrHistogram latency percentiles of each operation once
+ * the warm-up is over, and can write each operation's full percentile distribution for comparing releases.
+ * <p>
+ * Arguments are {@code name=value} settings of the profile plus {@code output=<directory>} for the distributions;
+ * arguments starting with {@code --} are passed to the application, e.g.
+ * {@code --transactions.pipeline.shards=4}.
+ * <p>
+ * Without a {@code rate} every connection sends its next request as soon as the previous one is answered, which
+ * hides how long requests would have queued behind a stall. With a rate the connections send on a fixed
+ * schedule and latency is measured from when each request was due, so stalls count against every request they
+ * delay.
+ */
+public final class LoadGenerator {
+
+    private static final Money BALANCE = Money.of("1000000000000.00");
+    private static final double ZIPF_EXPONENT = 1.1;
+    private static final String[] CHANNELS = {"CLIENT", "ATM", "INTERNAL"};
+    private static final int SEARCH_LIMIT = 20;
+    private static final int PRELOAD_BATCH = 1000;
+
+    private final LoadProfile profile;
+    private final String baseUrl;
+    private final String[] ibans;
+    private final double[] popularity;
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(30))
+            .build();
+    private final Map<Operation, Recorder> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+
+    private LoadGenerator(LoadProfile profile, String baseUrl) {
+        this.profile = profile;
+        this.baseUrl = baseUrl;
+        this.ibans = new String[profile.accounts()];
+        this.popularity = new double[profile.accounts()];
+        double total = 0;
+        for (int i = 0; i < ibans.length; i++) {
+            ibans[i] = String.format("ES%022d", i);
+            total += LoadProfile.ZIPF.equals(profile.skew()) ? 1 / Math.pow(i + 1, ZIPF_EXPONENT) : 1;
+            popularity[i] = total;
+        }
+        for (int i = 0; i < popularity.length; i++) {
+            popularity[i] /= total;
+        }
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new Recorder(3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> applicationArgs = new ArrayList<>(List.of("--server.port=0"));
+        List<String> settings = new ArrayList<>();
+        Path output = null;
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                applicationArgs.add(arg);
+            } else if (arg.startsWith("output=")) {
+                output = Path.of(arg.substring("output=".length()));
+            } else {
+                settings.add(arg);
+            }
+        }
+        LoadProfile profile = LoadProfile.parse(settings);
+        System.out.println(profile);
+
+        try (ConfigurableApplicationContext context = SpringApplication.run(BankTransactionsApplication.class,
+                applicationArgs.toArray(String[]::new))) {
+            String baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            LoadGenerator generator = new LoadGenerator(profile, baseUrl);
+            generator.preload(context.getBean(AccountService.class), context.getBean(TransactionService.class));
+            Map<Operation, Histogram> results = generator.run();
+            generator.report(results, output);
+        }
+    }
+
+    /**
+     * Creates the accounts and the transactions that status lookups pick from, through the services rather than
+     * HTTP so setting up does not take longer than the run. Dates spread from two days ago to two days ahead so
+     * every status is looked up.
+     */
+    private void preload(AccountService accountService, TransactionService transactionService) {
+        for (String iban : ibans) {
+            accountService.createAccount(new Account(iban, BALANCE));
+        }
+        SplittableRandom random = new SplittableRandom(profile.seed());
+        LocalDateTime now = LocalDateTime.now();
+        List<TransactionRequest> batch = new ArrayList<>(PRELOAD_BATCH);
+        for (int i = 0; i < profile.preload(); i++) {
+            TransactionRequest request = new TransactionRequest();
+            request.setReference(preloadedReference(i));
+            request.setAccountIban(iban(random));
+            request.setDate(now.plusHours(random.nextInt(96) - 48));
+            request.setAmount(BigDecimal.valueOf(100 + random.nextInt(100_000), 2));
+            request.setFee(BigDecimal.valueOf(random.nextInt(300), 2));
+            request.setDescription("");
+            batch.add(request);
+            if (batch.size() == PRELOAD_BATCH || i == profile.preload() - 1) {
+                transactionService.createTransactions(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private Map<Operation, Histogram> run() {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(profile.warmupSeconds());
+        long deadline = measureFrom + TimeUnit.SECONDS.toNanos(profile.durationSeconds());
+        // each connection's share of the target rate, 0 for a closed loop
+        long intervalNanos = profile.rate() > 0
+                ? TimeUnit.SECONDS.toNanos(1) * profile.connections() / profile.rate()
+                : 0;
+
+        // one virtual thread per client connection, so the load generator itself is not the bottleneck
+        try (ExecutorService connections = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < profile.connections(); i++) {
+                int connection = i;
+                connections.submit(() -> drive(connection, start, deadline, intervalNanos));
+            }
+            parkUntil(measureFrom);
+            // whatever was recorded during the warm-up is dropped with the first interval
+            for (Operation operation : Operation.values()) {
+                latencies.get(operation).getIntervalHistogram();
+                errors.get(operation).reset();
+            }
+        }
+        Map<Operation, Histogram> results = new EnumMap<>(Operation.class);
+        for (Operation operation : profile.mix().keySet()) {
+            results.put(operation, latencies.get(operation).getIntervalHistogram());
+        }
+        return results;
+    }
+
+    private void drive(int connection, long start, long deadline, long intervalNanos) {
+        SplittableRandom random = new SplittableRandom(profile.seed() + connection);
+        // connections start spread over one interval instead of all sending at once
+        long due = start + (intervalNanos > 0 ? random.nextLong(intervalNanos) : 0);
+        long sequence = 0;
+        while (true) {
+            if (intervalNanos == 0) {
+                due = System.nanoTime();
+            }
+            if (due >= deadline) {
+                return;
+            }
+            parkUntil(due);
+            Operation operation = profile.operation(random);
+            HttpRequest request = request(operation, connection, sequence++, random);
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 300) {
+                    errors.get(operation).increment();
+                }
+            } catch (IOException ex) {
+                errors.get(operation).increment();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            latencies.get(operation).recordValue(System.nanoTime() - due);
+            due += intervalNanos;
+        }
+    }
+
+    private HttpRequest request(Operation operation, int connection, long sequence, SplittableRandom random) {
+        switch (operation) {
+            case CREATE:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/transactions/create"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(String.format(
+                                "{\"reference\":\"load-%d-%d\",\"accountIban\":\"%s\",\"amount\":%d.%02d,\"fee\":0.50}",
+                                connection, sequence, iban(random), 1 + random.nextInt(1000), random.nextInt(100))))
+                        .build();
+            case SEARCH:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/transactions/search?account_iban=" + iban(random)
+                                + "&limit=" + SEARCH_LIMIT))
+                        .GET()
+                        .build();
+            case STATUS:
+                return HttpRequest.newBuilder(URI.create(baseUrl + "/transactions/status?reference="
+                                + preloadedReference(random.nextInt(profile.preload()))
+                                + "&channel=" + CHANNELS[random.nextInt(CHANNELS.length)]))
+                        .GET()
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private void report(Map<Operation, Histogram> results, Path output) throws IOException {
+        Histogram all = new Histogram(3);
+        System.out.printf("%n%-7s %12s %10s %8s %9s %9s %9s %9s %9s %9s%n",
+                "", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "p99.99 ms", "max ms");
+        long totalErrors = 0;
+        for (Map.Entry<Operation, Histogram> result : results.entrySet()) {
+            long operationErrors = errors.get(result.getKey()).sum();
+            print(result.getKey().label(), result.getValue(), operationErrors);
+            all.add(result.getValue());
+            totalErrors += operationErrors;
+        }
+        print("all", all, totalErrors);
+
+        if (output != null) {
+            Files.createDirectories(output);
+            for (Map.Entry<Operation, Histogram> result : results.entrySet()) {
+                writeDistribution(output.resolve(result.getKey().label() + ".hgrm"), result.getValue());
+            }
+            writeDistribution(output.resolve("all.hgrm"), all);
+            System.out.println("\nPercentile distributions written to " + output.toAbsolutePath());
+        }
+    }
+
+    private void print(String label, Histogram histogram, long errorCount) {
+        System.out.printf("%-7s %,12d %,10.0f %,8d %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                label, histogram.getTotalCount(), (double) histogram.getTotalCount() / profile.durationSeconds(),
+                errorCount, millis(histogram, 50), millis(histogram, 90), millis(histogram, 99),
+                millis(histogram, 99.9), millis(histogram, 99.99), histogram.getMaxValue() / 1e6);
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+
+    private static void writeDistribution(Path file, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            // in milliseconds, as HdrHistogram's plotter expects
+            histogram.outputPercentileDistribution(out, 1e6);
+        }
+    }
+
+    private static void parkUntil(long nanoTime) {
+        for (long remaining = nanoTime - System.nanoTime(); remaining > 0; remaining = nanoTime - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private String iban(SplittableRandom random) {
+        int index = Arrays.binarySearch(popularity, random.nextDouble());
+        return ibans[Math.min(index < 0 ? -index - 1 : index, ibans.length - 1)];
+    }
+
+    private static String preloadedReference(long index) {
+        return "preload-" + index;
+    }
+
+}
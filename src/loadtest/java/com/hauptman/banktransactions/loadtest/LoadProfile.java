@@ -0,0 +1,162 @@
+package com.hauptman.banktransactions.loadtest;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * What a load run does: the operation mix, how popular each account is, the dataset size, the number of
+ * concurrent connections, the warm-up and measured durations, an optional target rate and the seed everything
+ * random is derived from. A run starts from one of the named profiles and overrides settings with
+ * {@code name=value} arguments, so the same arguments replay the same workload against every release.
+ */
+public record LoadProfile(String name, Map<Operation, Integer> mix, String skew, int accounts, int preload,
+                          int connections, int warmupSeconds, int durationSeconds, int rate, long seed) {
+
+    public static final String UNIFORM = "uniform";
+    public static final String ZIPF = "zipf";
+
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "mix", "create:20,search:30,status:50",
+            "skew", ZIPF,
+            "accounts", "10000",
+            "preload", "100000",
+            "connections", "256",
+            "warmup", "10",
+            "duration", "60",
+            "rate", "0",
+            "seed", "42");
+
+    private static final Map<String, Map<String, String>> PROFILES = Map.of(
+            "balanced", Map.of(),
+            "write-heavy", Map.of("mix", "create:80,search:10,status:10"),
+            "read-heavy", Map.of("mix", "create:5,search:45,status:50"),
+            // a few merchant accounts taking most of the traffic, so the account locks are contended
+            "hot-accounts", Map.of("mix", "create:60,search:20,status:20", "accounts", "100"));
+
+    /**
+     * The profile named by {@code profile=} (balanced when there is none) with the other arguments applied.
+     */
+    public static LoadProfile parse(List<String> arguments) {
+        Map<String, String> overrides = new LinkedHashMap<>();
+        for (String argument : arguments) {
+            int separator = argument.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value but got " + argument);
+            }
+            overrides.put(argument.substring(0, separator), argument.substring(separator + 1));
+        }
+        String name = overrides.getOrDefault("profile", "balanced");
+        Map<String, String> preset = PROFILES.get(name);
+        if (preset == null) {
+            throw new IllegalArgumentException("Unknown profile " + name + ", expected one of " + PROFILES.keySet());
+        }
+        Map<String, String> settings = new LinkedHashMap<>(DEFAULTS);
+        settings.putAll(preset);
+        overrides.remove("profile");
+        for (Map.Entry<String, String> override : overrides.entrySet()) {
+            if (!DEFAULTS.containsKey(override.getKey())) {
+                throw new IllegalArgumentException("Unknown setting " + override.getKey() + ", expected one of "
+                        + DEFAULTS.keySet());
+            }
+            settings.put(override.getKey(), override.getValue());
+        }
+
+        LoadProfile profile = new LoadProfile(name, parseMix(settings.get("mix")), settings.get("skew"),
+                Integer.parseInt(settings.get("accounts")), Integer.parseInt(settings.get("preload")),
+                Integer.parseInt(settings.get("connections")), Integer.parseInt(settings.get("warmup")),
+                Integer.parseInt(settings.get("duration")), Integer.parseInt(settings.get("rate")),
+                Long.parseLong(settings.get("seed")));
+        profile.validate();
+        return profile;
+    }
+
+    /**
+     * Picks an operation with the probability of its share of the mix.
+     */
+    public Operation operation(SplittableRandom random) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int pick = random.nextInt(total);
+        for (Map.Entry<Operation, Integer> share : mix.entrySet()) {
+            pick -= share.getValue();
+            if (pick < 0) {
+                return share.getKey();
+            }
+        }
+        throw new IllegalStateException("The mix has no operations");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mixText = new StringBuilder();
+        mix.forEach((operation, weight) -> mixText.append(mixText.isEmpty() ? "" : ",").append(operation.label())
+                .append(':').append(weight));
+        return String.format("profile %s: mix %s, %s over %,d accounts with %,d preloaded transactions, "
+                        + "%,d connections, %d s after a %d s warm-up, %s, seed %d",
+                name, mixText, skew, accounts, preload, connections, durationSeconds, warmupSeconds,
+                rate > 0 ? String.format("%,d req/s target", rate) : "closed loop", seed);
+    }
+
+    private void validate() {
+        if (!UNIFORM.equals(skew) && !ZIPF.equals(skew)) {
+            throw new IllegalArgumentException("Skew must be " + UNIFORM + " or " + ZIPF);
+        }
+        if (accounts <= 0 || connections <= 0 || durationSeconds <= 0) {
+            throw new IllegalArgumentException("Accounts, connections and duration must be positive");
+        }
+        if (preload < 0 || warmupSeconds < 0 || rate < 0) {
+            throw new IllegalArgumentException("Preload, warm-up and rate must not be negative");
+        }
+        if (mix.getOrDefault(Operation.STATUS, 0) > 0 && preload == 0) {
+            throw new IllegalArgumentException("Status lookups need preloaded transactions to look up");
+        }
+    }
+
+    private static Map<Operation, Integer> parseMix(String text) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String share : text.split(",")) {
+            String[] parts = share.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight in the mix but got " + share);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("Mix weights must not be negative");
+            }
+            if (weight > 0) {
+                mix.put(Operation.of(parts[0].trim()), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("The mix needs at least one operation");
+        }
+        return mix;
+    }
+
+    public enum Operation {
+        CREATE("create"),
+        SEARCH("search"),
+        STATUS("status");
+
+        private final String label;
+
+        Operation(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        static Operation of(String label) {
+            return Arrays.stream(values())
+                    .filter(operation -> operation.label.equals(label))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unknown operation " + label));
+        }
+    }
+
+}
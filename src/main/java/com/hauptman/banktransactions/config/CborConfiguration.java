@@ -0,0 +1,92 @@
+package com.hauptman.banktransactions.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Serves {@code application/cbor} next to JSON on every endpoint, chosen by the request's Content-Type and
+ * Accept headers. Amounts are written as CBOR decimal fractions, an unscaled integer and its scale, and dates
+ * as seconds since the epoch on the local time line (the dates carry no zone), with the nanoseconds as a
+ * decimal fraction when there are any. Neither needs the text formatting and parsing the JSON path does.
+ */
+@Configuration
+public class CborConfiguration {
+
+    // replaces the default CBOR converter Spring MVC would otherwise register with a plain mapper
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborMapper(builder));
+    }
+
+    /**
+     * A CBOR mapper with the application's Jackson settings, kept out of the context so the JSON
+     * {@link ObjectMapper} stays the one injected elsewhere.
+     */
+    public static ObjectMapper cborMapper(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper mapper = builder.factory(new CBORFactory()).build();
+        SimpleModule epochDates = new SimpleModule("CborEpochDates");
+        epochDates.addSerializer(LocalDateTime.class, new EpochSecondsSerializer());
+        epochDates.addDeserializer(LocalDateTime.class, new EpochSecondsDeserializer());
+        return mapper.registerModule(epochDates);
+    }
+
+    static final class EpochSecondsSerializer extends StdSerializer<LocalDateTime> {
+
+        EpochSecondsSerializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            long seconds = value.toEpochSecond(ZoneOffset.UTC);
+            if (value.getNano() == 0) {
+                generator.writeNumber(seconds);
+            } else {
+                generator.writeNumber(BigDecimal.valueOf(seconds).add(BigDecimal.valueOf(value.getNano(), 9)).stripTrailingZeros());
+            }
+        }
+    }
+
+    static final class EpochSecondsDeserializer extends StdDeserializer<LocalDateTime> {
+
+        EpochSecondsDeserializer() {
+            super(LocalDateTime.class);
+        }
+
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            switch (parser.currentToken()) {
+                case VALUE_NUMBER_INT:
+                    return LocalDateTime.ofEpochSecond(parser.getLongValue(), 0, ZoneOffset.UTC);
+                case VALUE_NUMBER_FLOAT:
+                    BigDecimal value = parser.getDecimalValue();
+                    BigDecimal seconds = value.setScale(0, RoundingMode.FLOOR);
+                    int nanos = value.subtract(seconds).movePointRight(9).intValue();
+                    return LocalDateTime.ofEpochSecond(seconds.longValueExact(), nanos, ZoneOffset.UTC);
+                case VALUE_STRING:
+                    // ISO date-times are still accepted, as in JSON
+                    return LocalDateTime.parse(parser.getText());
+                default:
+                    return (LocalDateTime) context.handleUnexpectedToken(LocalDateTime.class, parser);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,20 @@
+package com.hauptman.banktransactions.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+
+/**
+ * The clock transaction statuses are worked out against, in the zone transaction dates are local to. It is a
+ * bean so tests can move time across a midnight or an offset change.
+ */
+@Configuration
+public class ClockConfiguration {
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+
+}
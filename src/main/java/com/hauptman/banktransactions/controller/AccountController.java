@@ -0,0 +1,31 @@
+package com.hauptman.banktransactions.controller;
+
+import com.hauptman.banktransactions.dto.AccountSummary;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/accounts")
+public class AccountController {
+
+    private final TransactionService transactionService;
+
+    @Autowired
+    public AccountController(TransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    @GetMapping("/{iban}/summary")
+    public ResponseEntity<?> getAccountSummary(@PathVariable String iban) {
+        try {
+            AccountSummary summary = transactionService.getAccountSummary(iban);
+            return ResponseEntity.ok(summary);
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.hauptman.banktransactions.controller;
+
+import com.hauptman.banktransactions.dto.*;
+import com.hauptman.banktransactions.exception.TransactionCreationException;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking variant of {@link TransactionController}. Request threads are released as soon as the
+ * publisher is returned; search results are pulled from the account index one element per demand signal, so a
+ * slow client holds back the walk instead of buffering the whole account in memory.
+ */
+@RestController
+@RequestMapping("/reactive/transactions")
+public class ReactiveTransactionController {
+
+    private final TransactionService transactionService;
+
+    @Autowired
+    public ReactiveTransactionController(TransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    @PostMapping("/create")
+    public Mono<ResponseEntity<?>> createTransaction(@RequestBody TransactionRequest request) {
+        // creating waits on the account lock and the log sync, which must not happen on a shared event loop
+        return Mono.fromCallable(() -> transactionService.createTransaction(request))
+                .subscribeOn(Schedulers.boundedElastic())
+                .<ResponseEntity<?>>map(transaction -> new ResponseEntity<>(transaction, HttpStatus.CREATED))
+                .onErrorResume(IllegalArgumentException.class, ex -> Mono.just(
+                        new ResponseEntity<>("Invalid transaction request: " + ex.getMessage(), HttpStatus.BAD_REQUEST)))
+                .onErrorResume(TransactionCreationException.class, ex -> Mono.just(
+                        new ResponseEntity<>("Failed to create transaction: " + ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR)));
+    }
+
+    @GetMapping(value = "/search", produces = TransactionController.APPLICATION_NDJSON_VALUE)
+    public Flux<Transaction> searchTransactions(
+            @RequestParam(name = "account_iban", required = false) String accountIban,
+            @RequestParam(name = "sort_direction", defaultValue = "ASC") Sort.Direction sortDirection) {
+        return Flux.fromStream(() -> transactionService.streamTransactions(accountIban, sortDirection));
+    }
+
+    @GetMapping("/status")
+    public Mono<TransactionStatusResponse> getTransactionStatus(@ModelAttribute TransactionStatusRequest request) {
+        return Mono.fromSupplier(() -> transactionService.getTransactionStatus(request));
+    }
+
+}
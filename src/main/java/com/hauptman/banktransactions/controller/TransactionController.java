@@ -1,25 +1,47 @@
 package com.hauptman.banktransactions.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hauptman.banktransactions.dto.*;
 import com.hauptman.banktransactions.exception.TransactionCreationException;
+import com.hauptman.banktransactions.service.TransactionFeed;
 import com.hauptman.banktransactions.service.TransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/transactions")
 public class TransactionController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final String FEED_EVENT_NAME = "transaction";
+
     private final TransactionService transactionService;
+    private final TransactionFeed transactionFeed;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public TransactionController(TransactionService transactionService) {
+    public TransactionController(TransactionService transactionService, TransactionFeed transactionFeed,
+                                 ObjectMapper objectMapper) {
         this.transactionService = transactionService;
+        this.transactionFeed = transactionFeed;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping("/create")
@@ -35,11 +57,111 @@ public class TransactionController {
         }
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<?> createTransactions(@RequestBody List<TransactionRequest> requests) {
+        try {
+            List<TransactionBatchResult> results = transactionService.createTransactions(requests);
+            return ResponseEntity.ok(results);
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>("Invalid transaction batch: " + ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @PostMapping("/transfer")
+    public ResponseEntity<?> transfer(@RequestBody TransferRequest request) {
+        try {
+            Transaction transaction = transactionService.transfer(request);
+            return new ResponseEntity<>(transaction, HttpStatus.CREATED);
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>("Invalid transfer request: " + ex.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (TransactionCreationException ex) {
+            return new ResponseEntity<>("Failed to transfer: " + ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     @GetMapping("/search")
-    public List<Transaction> searchTransactions(
+    public ResponseEntity<?> searchTransactions(
             @RequestParam(name = "account_iban", required = false) String accountIban,
+            @RequestParam(name = "sort_direction", defaultValue = "ASC") Sort.Direction sortDirection,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            @RequestParam(name = "limit", required = false) Integer limit,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            // a date range orders by date and may span every account; otherwise the account is searched by amount
+            TransactionPage page = from != null || to != null
+                    ? transactionService.searchTransactions(accountIban, from, to, sortDirection, cursor, limit)
+                    : transactionService.searchTransactions(accountIban, sortDirection, cursor, limit);
+            HttpHeaders headers = new HttpHeaders();
+            if (page.getNextCursor() != null) {
+                headers.set(NEXT_CURSOR_HEADER, page.getNextCursor());
+            }
+            return new ResponseEntity<>(page.getTransactions(), headers, HttpStatus.OK);
+        } catch (IllegalArgumentException ex) {
+            return new ResponseEntity<>("Invalid search request: " + ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping(value = "/export", produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(name = "account_iban") String accountIban,
             @RequestParam(name = "sort_direction", defaultValue = "ASC") Sort.Direction sortDirection) {
-        return transactionService.searchTransactions(accountIban, sortDirection);
+        StreamingResponseBody body = outputStream -> {
+            try (Stream<Transaction> transactions = transactionService.streamTransactions(accountIban, sortDirection);
+                 JsonGenerator generator = objectMapper.createGenerator(outputStream)) {
+                // each record ends its own line, so the space Jackson puts between root values is not wanted
+                generator.setRootValueSeparator(null);
+                Iterator<Transaction> iterator = transactions.iterator();
+                while (iterator.hasNext()) {
+                    generator.writeObject(iterator.next());
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    /**
+     * Server-sent events for every transaction created from now on, or after the event id given as {@code after}
+     * or by the {@code Last-Event-ID} header a reconnecting event source sends. Each event's id is its offset,
+     * prefixed with the feed's epoch so an id from before a restart is answered with 410 instead of skipping
+     * transactions. The stream ends when the subscriber falls too far behind, to be resumed from the last id it
+     * received.
+     */
+    @GetMapping(value = "/feed", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> feedTransactions(
+            @RequestParam(name = "account_iban", required = false) String accountIban,
+            @RequestParam(name = "after", required = false) String after,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = new SseEmitter();
+        TransactionFeed.Subscription subscription;
+        try {
+            subscription = transactionFeed.subscribe(accountIban, lastEventId != null ? lastEventId : after,
+                    new TransactionFeed.Sink() {
+                        @Override
+                        public void send(String id, Transaction transaction) throws IOException {
+                            emitter.send(SseEmitter.event()
+                                    .id(id)
+                                    .name(FEED_EVENT_NAME)
+                                    .data(transaction, MediaType.APPLICATION_JSON));
+                        }
+
+                        @Override
+                        public void close(String reason) {
+                            emitter.complete();
+                        }
+                    });
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.GONE, ex.getMessage());
+        } catch (IllegalStateException ex) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage());
+        }
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(subscription::cancel);
+        emitter.onError(ex -> subscription.cancel());
+        return ResponseEntity.ok(emitter);
     }
 
     @GetMapping("/status")
@@ -49,4 +171,11 @@ public class TransactionController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/status/batch")
+    public ResponseEntity<List<TransactionStatusResponse>> getTransactionStatuses(
+            @RequestBody List<TransactionStatusRequest> requests) {
+        List<TransactionStatusResponse> responses = transactionService.getTransactionStatuses(requests);
+        return ResponseEntity.ok(responses);
+    }
+
 }
@@ -0,0 +1,17 @@
+package com.hauptman.banktransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class AccountSummary {
+    private String accountIban;
+    private long transactionCount;
+    private Money totalDebited;
+    private Money totalFees;
+    private Money minAmount;
+    private Money maxAmount;
+}
@@ -0,0 +1,123 @@
+package com.hauptman.banktransactions.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * An amount of money as a whole number of its currency's minor units, cents for euros. Arithmetic and
+ * comparisons work on the long directly, throw {@link ArithmeticException} on overflow instead of wrapping, and
+ * refuse to mix currencies. In JSON an amount is a plain decimal number in the default currency, as amounts
+ * have always been.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("EUR");
+    public static final Money ZERO = new Money(0, DEFAULT_CURRENCY);
+
+    private final long minorUnits;
+    private final Currency currency;
+
+    private Money(long minorUnits, Currency currency) {
+        this.minorUnits = minorUnits;
+        this.currency = currency;
+    }
+
+    public static Money ofMinorUnits(long minorUnits) {
+        return ofMinorUnits(minorUnits, DEFAULT_CURRENCY);
+    }
+
+    public static Money ofMinorUnits(long minorUnits, Currency currency) {
+        if (currency == DEFAULT_CURRENCY) {
+            return minorUnits == 0 ? ZERO : new Money(minorUnits, currency);
+        }
+        if (currency.getDefaultFractionDigits() < 0) {
+            throw new IllegalArgumentException(currency.getCurrencyCode() + " has no minor unit");
+        }
+        return new Money(minorUnits, currency);
+    }
+
+    @JsonCreator(mode = JsonCreator.Mode.DELEGATING)
+    public static Money of(BigDecimal amount) {
+        return of(amount, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Throws {@link IllegalArgumentException} when the amount has more decimals than the currency's minor unit or
+     * does not fit in a long of minor units.
+     */
+    public static Money of(BigDecimal amount, Currency currency) {
+        if (currency.getDefaultFractionDigits() < 0) {
+            throw new IllegalArgumentException(currency.getCurrencyCode() + " has no minor unit");
+        }
+        try {
+            return ofMinorUnits(amount.setScale(currency.getDefaultFractionDigits()).unscaledValue().longValueExact(),
+                    currency);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Amount " + amount + " is not a whole number of "
+                    + currency.getCurrencyCode() + " minor units or is out of range", ex);
+        }
+    }
+
+    public static Money of(String amount) {
+        return of(new BigDecimal(amount));
+    }
+
+    public long getMinorUnits() {
+        return minorUnits;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public Money plus(Money other) {
+        requireSameCurrency(other);
+        return ofMinorUnits(Math.addExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public Money minus(Money other) {
+        requireSameCurrency(other);
+        return ofMinorUnits(Math.subtractExact(minorUnits, other.minorUnits), currency);
+    }
+
+    public int signum() {
+        return Long.signum(minorUnits);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        requireSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, currency.getDefaultFractionDigits());
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Money money && minorUnits == money.minorUnits && currency.equals(money.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minorUnits) * 31 + currency.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency.getCurrencyCode();
+    }
+
+    private void requireSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Cannot combine amounts in " + currency.getCurrencyCode() + " and "
+                    + other.currency.getCurrencyCode());
+        }
+    }
+
+}
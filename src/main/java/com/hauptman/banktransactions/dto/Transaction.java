@@ -1,21 +1,60 @@
 package com.hauptman.banktransactions.dto;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 public class Transaction {
     private String reference;
     private String accountIban;
     private LocalDateTime date;
-    private BigDecimal amount;
-    private BigDecimal fee;
+    private Money amount;
+    private Money fee;
     private String description;
-}
 
+    // amount minus fee, worked out once when the transaction is created instead of on every status lookup
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Money netAmount;
+
+    public Transaction(String reference, String accountIban, LocalDateTime date, Money amount, Money fee,
+                       String description) {
+        this.reference = reference;
+        this.accountIban = accountIban;
+        this.date = date;
+        this.amount = amount;
+        this.fee = fee;
+        this.description = description;
+        this.netAmount = netAmount(amount, fee);
+    }
+
+    public void setAmount(Money amount) {
+        this.amount = amount;
+        this.netAmount = netAmount(amount, fee);
+    }
+
+    public void setFee(Money fee) {
+        this.fee = fee;
+        this.netAmount = netAmount(amount, fee);
+    }
+
+    @JsonIgnore
+    public Money getNetAmount() {
+        return netAmount;
+    }
+
+    private static Money netAmount(Money amount, Money fee) {
+        return amount != null && fee != null ? amount.minus(fee) : null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.hauptman.banktransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionBatchResult {
+    private String reference;
+    private boolean success;
+    private Transaction transaction;
+    private String error;
+
+    public static TransactionBatchResult created(Transaction transaction) {
+        return new TransactionBatchResult(transaction.getReference(), true, transaction, null);
+    }
+
+    public static TransactionBatchResult failed(String reference, String error) {
+        return new TransactionBatchResult(reference, false, null, error);
+    }
+}
@@ -0,0 +1,45 @@
+package com.hauptman.banktransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionCursor {
+    private Money amount;
+    private String reference;
+
+    public static TransactionCursor after(Transaction transaction) {
+        return new TransactionCursor(transaction.getAmount(), transaction.getReference());
+    }
+
+    public String encode() {
+        String key = amount.toBigDecimal().toPlainString() + ":" + reference;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransactionCursor decode(String cursor) {
+        String key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid cursor", ex);
+        }
+        int separator = key.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return new TransactionCursor(Money.of(new BigDecimal(key.substring(0, separator))),
+                    key.substring(separator + 1));
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid cursor", ex);
+        }
+    }
+}
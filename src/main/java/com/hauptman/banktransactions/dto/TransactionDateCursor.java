@@ -0,0 +1,51 @@
+package com.hauptman.banktransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a date-ordered search, the date-range counterpart of {@link TransactionCursor}.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionDateCursor {
+    // ISO date-times contain ':', so the date and the reference are split on a character they cannot contain
+    private static final char SEPARATOR = '|';
+
+    private LocalDateTime date;
+    private String reference;
+
+    public static TransactionDateCursor after(Transaction transaction) {
+        return new TransactionDateCursor(transaction.getDate(), transaction.getReference());
+    }
+
+    public String encode() {
+        String key = date + String.valueOf(SEPARATOR) + reference;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static TransactionDateCursor decode(String cursor) {
+        String key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException ex) {
+            throw new IllegalArgumentException("Invalid cursor", ex);
+        }
+        int separator = key.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        try {
+            return new TransactionDateCursor(LocalDateTime.parse(key.substring(0, separator)), key.substring(separator + 1));
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid cursor", ex);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.hauptman.banktransactions.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TransactionPage {
+    private List<Transaction> transactions;
+    private String nextCursor;
+}
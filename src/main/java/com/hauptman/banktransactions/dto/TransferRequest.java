@@ -0,0 +1,16 @@
+package com.hauptman.banktransactions.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class TransferRequest {
+    private String reference;
+    private String fromIban;
+    private String toIban;
+    private LocalDateTime date;
+    private BigDecimal amount;
+    private String description;
+}
@@ -0,0 +1,41 @@
+package com.hauptman.banktransactions.metrics;
+
+import com.hauptman.banktransactions.repository.AccountRepository;
+import com.hauptman.banktransactions.repository.TransactionRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Repository sizes, read from the map sizes when the registry is scraped so the write path is not touched.
+ * Per-account index sizes are reported as the number of indexed accounts rather than one gauge per IBAN,
+ * which would give every account its own time series.
+ */
+@Component
+public class RepositoryMetrics implements MeterBinder {
+
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+
+    @Autowired
+    public RepositoryMetrics(TransactionRepository transactionRepository, AccountRepository accountRepository) {
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("transactions.repository.size", transactionRepository, TransactionRepository::count)
+                .description("Number of stored transactions")
+                .register(registry);
+        Gauge.builder("transactions.repository.accounts", transactionRepository, TransactionRepository::countAccounts)
+                .description("Number of accounts with an index of transactions")
+                .register(registry);
+        Gauge.builder("accounts.repository.size", accountRepository, AccountRepository::count)
+                .description("Number of stored accounts")
+                .register(registry);
+    }
+
+}
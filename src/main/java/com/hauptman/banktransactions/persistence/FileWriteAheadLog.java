@@ -0,0 +1,448 @@
+package com.hauptman.banktransactions.persistence;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Transaction;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of repository changes with group commit: appenders only copy their frame into a shared
+ * buffer, and a single flusher thread writes and fsyncs whatever has accumulated while the previous sync
+ * was running. Each frame is {@code [payload length][lsn][crc32][payload]}; a torn frame at the end of a
+ * segment is cut off on replay. Waiting is done on locks rather than monitors, so virtual threads blocked on a
+ * sync release their carrier thread.
+ */
+@Component
+@ConditionalOnProperty(name = "transactions.wal.enabled", havingValue = "true")
+public class FileWriteAheadLog implements WriteAheadLog {
+
+    private static final Logger log = LoggerFactory.getLogger(FileWriteAheadLog.class);
+
+    private static final int FRAME_HEADER_SIZE = 16;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+
+    private final Lock appendLock = new ReentrantLock();
+    private final Condition appended = appendLock.newCondition();
+    private FrameBuffer pending = new FrameBuffer();
+    private FrameBuffer flushing = new FrameBuffer();
+    private long lastLsn;
+    private FileChannel segment;
+    private Thread flusher;
+    private boolean running;
+    private boolean rollRequested;
+
+    private final Lock durableLock = new ReentrantLock();
+    private final Condition durableAdvanced = durableLock.newCondition();
+    private volatile long durableLsn;
+    private volatile IOException failure;
+
+    private final ThreadLocal<long[]> lastAppendedLsn = ThreadLocal.withInitial(() -> new long[1]);
+    private final ThreadLocal<Unit> units = new ThreadLocal<>();
+    private volatile boolean recovered;
+
+    @Autowired
+    public FileWriteAheadLog(@Value("${transactions.wal.directory:data/wal}") String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    @Override
+    public void appendTransaction(Transaction transaction) {
+        append(out -> {
+            out.writeByte(RecordCodec.TRANSACTION);
+            RecordCodec.writeTransaction(out, transaction);
+        });
+    }
+
+    @Override
+    public void appendAccount(Account account) {
+        append(out -> {
+            out.writeByte(RecordCodec.ACCOUNT);
+            RecordCodec.writeAccount(out, account);
+        });
+    }
+
+    @Override
+    public void atomically(Runnable action) {
+        Unit unit = units.get();
+        if (unit != null || !recovered) {
+            action.run();
+            return;
+        }
+        unit = new Unit();
+        units.set(unit);
+        try {
+            action.run();
+        } finally {
+            units.remove();
+        }
+        if (unit.payload.size() > 0) {
+            enqueue(unit.payload);
+        }
+    }
+
+    @Override
+    public void checkWritable() {
+        IOException failed = failure;
+        if (failed != null) {
+            throw new UncheckedIOException("Write-ahead log is unavailable", failed);
+        }
+    }
+
+    @Override
+    public void awaitDurable() {
+        awaitDurable(lastAppendedLsn.get()[0]);
+    }
+
+    @Override
+    public long appendedLsn() {
+        return lastAppendedLsn.get()[0];
+    }
+
+    @Override
+    public void awaitDurable(long lsn) {
+        if (lsn <= durableLsn) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durableLsn < lsn) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Write-ahead log is unavailable", failure);
+                }
+                durableAdvanced.await();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the write-ahead log", ex);
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    @Override
+    public long durableLsn() {
+        return durableLsn;
+    }
+
+    @Override
+    public void replay(long afterLsn, Consumer<Transaction> transactionHandler, Consumer<Account> accountHandler) {
+        appendLock.lock();
+        try {
+            if (segment != null) {
+                throw new IllegalStateException("Write-ahead log has already been replayed");
+            }
+            lastLsn = afterLsn;
+            try {
+                Files.createDirectories(directory);
+                for (Path path : segments()) {
+                    replaySegment(path, afterLsn, transactionHandler, accountHandler);
+                }
+                segment = FileChannel.open(segmentPath(lastLsn + 1),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Failed to replay write-ahead log in " + directory, ex);
+            }
+            durableLsn = lastLsn;
+            running = true;
+            flusher = new Thread(this::flushLoop, "wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+            recovered = true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public long checkpoint() {
+        appendLock.lock();
+        try {
+            // the flusher starts a new segment after its next write, so older segments can be dropped later on
+            rollRequested = true;
+            return lastLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void truncateBefore(long lsn) {
+        try {
+            List<Path> segments = segments();
+            for (int i = 0; i < segments.size() - 1; i++) {
+                if (firstLsn(segments.get(i + 1)) <= lsn + 1) {
+                    Files.delete(segments.get(i));
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to truncate write-ahead log in " + directory, ex);
+        }
+    }
+
+    /**
+     * The error that stopped the flusher, or null while the log is healthy. Once set, the changes applied in memory
+     * may be ahead of the disk, so they are only trusted again after a restart has rebuilt them from the log.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        Thread stopping;
+        appendLock.lock();
+        try {
+            running = false;
+            appended.signalAll();
+            stopping = flusher;
+        } finally {
+            appendLock.unlock();
+        }
+        if (stopping != null) {
+            stopping.join();
+        }
+        appendLock.lock();
+        try {
+            if (segment != null) {
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void append(RecordWriter writer) {
+        // until recovery has finished, whatever is written is the state being rebuilt from disk
+        if (!recovered) {
+            return;
+        }
+        Unit unit = units.get();
+        try {
+            if (unit != null) {
+                writer.write(unit.out);
+            } else {
+                Unit single = new Unit();
+                writer.write(single.out);
+                enqueue(single.payload);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to encode write-ahead log record", ex);
+        }
+    }
+
+    private void enqueue(FrameBuffer payload) {
+        appendLock.lock();
+        try {
+            if (failure != null) {
+                throw new UncheckedIOException("Write-ahead log is unavailable", failure);
+            }
+            if (!running) {
+                throw new IllegalStateException("Write-ahead log is not open");
+            }
+            long lsn = ++lastLsn;
+            CRC32 crc = new CRC32();
+            crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, lsn));
+            crc.update(payload.asByteBuffer());
+            try {
+                DataOutputStream out = new DataOutputStream(pending);
+                out.writeInt(payload.size());
+                out.writeLong(lsn);
+                out.writeInt((int) crc.getValue());
+                payload.writeTo(out);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            lastAppendedLsn.get()[0] = lsn;
+            appended.signal();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            long upTo;
+            boolean roll;
+            appendLock.lock();
+            try {
+                while (pending.size() == 0 && running) {
+                    appended.await();
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                FrameBuffer full = pending;
+                pending = flushing;
+                flushing = full;
+                upTo = lastLsn;
+                roll = rollRequested;
+                rollRequested = false;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                appendLock.unlock();
+            }
+            try {
+                // everything appended while the previous fsync ran goes out in this single write and sync
+                ByteBuffer buffer = flushing.asByteBuffer();
+                while (buffer.hasRemaining()) {
+                    segment.write(buffer);
+                }
+                segment.force(false);
+                flushing.reset();
+                if (roll) {
+                    FileChannel previous = segment;
+                    segment = FileChannel.open(segmentPath(upTo + 1),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    previous.close();
+                }
+            } catch (IOException ex) {
+                log.error("Write-ahead log flush failed, rejecting further writes", ex);
+                durableLock.lock();
+                try {
+                    failure = ex;
+                    durableAdvanced.signalAll();
+                } finally {
+                    durableLock.unlock();
+                }
+                return;
+            }
+            durableLock.lock();
+            try {
+                durableLsn = upTo;
+                durableAdvanced.signalAll();
+            } finally {
+                durableLock.unlock();
+            }
+        }
+    }
+
+    private void replaySegment(Path path, long afterLsn, Consumer<Transaction> transactionHandler,
+                               Consumer<Account> accountHandler) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long position = 0;
+            ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+            while (position < size) {
+                header.clear();
+                if (size - position < FRAME_HEADER_SIZE || !readFully(channel, header, position)) {
+                    break;
+                }
+                int length = header.getInt(0);
+                long lsn = header.getLong(4);
+                int checksum = header.getInt(12);
+                if (length < 0 || length > size - position - FRAME_HEADER_SIZE) {
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                if (!readFully(channel, payload, position + FRAME_HEADER_SIZE)) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(ByteBuffer.allocate(Long.BYTES).putLong(0, lsn));
+                crc.update(payload.flip());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                if (lsn > afterLsn) {
+                    applyFrame(payload.rewind(), transactionHandler, accountHandler);
+                }
+                lastLsn = Math.max(lastLsn, lsn);
+                position += FRAME_HEADER_SIZE + length;
+            }
+            if (position < size) {
+                log.warn("Truncating torn write-ahead log frame in {} at offset {}", path, position);
+                channel.truncate(position);
+            }
+        }
+    }
+
+    private static void applyFrame(ByteBuffer payload, Consumer<Transaction> transactionHandler,
+                                   Consumer<Account> accountHandler) throws IOException {
+        while (payload.hasRemaining()) {
+            byte type = payload.get();
+            switch (type) {
+                case RecordCodec.TRANSACTION -> transactionHandler.accept(RecordCodec.readTransaction(payload));
+                case RecordCodec.ACCOUNT -> accountHandler.accept(RecordCodec.readAccount(payload));
+                default -> throw new IOException("Unknown write-ahead log record type " + type);
+            }
+        }
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            // segment names are zero padded, so name order is lsn order
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private Path segmentPath(long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static final class Unit {
+        private final FrameBuffer payload = new FrameBuffer();
+        private final DataOutputStream out = new DataOutputStream(payload);
+    }
+
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.hauptman.banktransactions.persistence;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Transaction;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+@Component
+@ConditionalOnProperty(name = "transactions.wal.enabled", havingValue = "false", matchIfMissing = true)
+public class NoOpWriteAheadLog implements WriteAheadLog {
+
+    @Override
+    public void appendTransaction(Transaction transaction) {
+    }
+
+    @Override
+    public void appendAccount(Account account) {
+    }
+
+    @Override
+    public void atomically(Runnable action) {
+        action.run();
+    }
+
+    @Override
+    public void checkWritable() {
+    }
+
+    @Override
+    public void awaitDurable() {
+    }
+
+    @Override
+    public long appendedLsn() {
+        return 0;
+    }
+
+    @Override
+    public void awaitDurable(long lsn) {
+    }
+
+    @Override
+    public long durableLsn() {
+        return 0;
+    }
+
+    @Override
+    public void replay(long afterLsn, Consumer<Transaction> transactionHandler, Consumer<Account> accountHandler) {
+    }
+
+    @Override
+    public long checkpoint() {
+        return 0;
+    }
+
+    @Override
+    public void truncateBefore(long lsn) {
+    }
+
+}
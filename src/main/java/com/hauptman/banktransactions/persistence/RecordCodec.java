@@ -0,0 +1,101 @@
+package com.hauptman.banktransactions.persistence;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+// Records are written through DataOutput and read straight from buffers, which may be memory mapped.
+public final class RecordCodec {
+
+    public static final byte TRANSACTION = 1;
+    public static final byte ACCOUNT = 2;
+
+    private RecordCodec() {
+    }
+
+    public static void writeTransaction(DataOutput out, Transaction transaction) throws IOException {
+        writeString(out, transaction.getReference());
+        writeString(out, transaction.getAccountIban());
+        writeDate(out, transaction.getDate());
+        writeMoney(out, transaction.getAmount());
+        writeMoney(out, transaction.getFee());
+        writeString(out, transaction.getDescription());
+    }
+
+    public static Transaction readTransaction(ByteBuffer in) {
+        String reference = readString(in);
+        String accountIban = readString(in);
+        LocalDateTime date = readDate(in);
+        Money amount = readMoney(in);
+        Money fee = readMoney(in);
+        String description = readString(in);
+        return new Transaction(reference, accountIban, date, amount, fee, description);
+    }
+
+    public static void writeAccount(DataOutput out, Account account) throws IOException {
+        writeString(out, account.getIban());
+        writeMoney(out, account.getBalance());
+    }
+
+    public static Account readAccount(ByteBuffer in) {
+        String iban = readString(in);
+        Money balance = readMoney(in);
+        return new Account(iban, balance);
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // amounts stay decimal strings, as logs and snapshots written before amounts were minor units have them
+    private static void writeMoney(DataOutput out, Money value) throws IOException {
+        writeString(out, value == null ? null : value.toBigDecimal().toString());
+    }
+
+    private static Money readMoney(ByteBuffer in) {
+        String value = readString(in);
+        return value == null ? null : Money.of(new BigDecimal(value));
+    }
+
+    private static void writeDate(DataOutput out, LocalDateTime date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(date.getNano());
+        }
+    }
+
+    private static LocalDateTime readDate(ByteBuffer in) {
+        if (in.get() == 0) {
+            return null;
+        }
+        long epochSecond = in.getLong();
+        int nano = in.getInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+
+}
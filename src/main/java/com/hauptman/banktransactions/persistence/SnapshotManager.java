@@ -0,0 +1,286 @@
+package com.hauptman.banktransactions.persistence;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.repository.AccountRepository;
+import com.hauptman.banktransactions.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Periodically writes every account and transaction to a compact binary snapshot, so startup only has to
+ * replay the write-ahead log from the snapshot's lsn onwards. Snapshots are taken without stopping writers:
+ * anything that changes while the snapshot is written has an lsn past the checkpoint and is replayed on top.
+ * A snapshot is {@code [magic][version][lsn]}, then {@code [type][length][record]} entries, an end marker and
+ * a crc32 of everything before it.
+ */
+@Component
+@ConditionalOnProperty(name = "transactions.wal.enabled", havingValue = "true")
+public class SnapshotManager {
+
+    private static final Logger log = LoggerFactory.getLogger(SnapshotManager.class);
+
+    private static final int MAGIC = 0x42545853;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final byte END = 0;
+    private static final long MAP_WINDOW = 64L * 1024 * 1024;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    // the previous snapshot is kept as a fallback, so the log is only truncated up to it
+    private static final int RETAINED_SNAPSHOTS = 2;
+
+    private final Path directory;
+    private final WriteAheadLog writeAheadLog;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+
+    @Autowired
+    public SnapshotManager(@Value("${transactions.snapshot.directory:data/snapshots}") String directory,
+                           WriteAheadLog writeAheadLog, TransactionRepository transactionRepository,
+                           AccountRepository accountRepository) {
+        this.directory = Paths.get(directory);
+        this.writeAheadLog = writeAheadLog;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Loads the newest intact snapshot and returns its lsn, or 0 when there is none.
+     */
+    public long restore(Consumer<Transaction> transactionHandler, Consumer<Account> accountHandler) {
+        try {
+            Files.createDirectories(directory);
+            for (Path snapshot : snapshots()) {
+                if (isIntact(snapshot)) {
+                    return load(snapshot, transactionHandler, accountHandler);
+                }
+                log.warn("Skipping corrupt snapshot {}", snapshot);
+            }
+            return 0;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to restore snapshot from " + directory, ex);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${transactions.snapshot.interval-ms:300000}",
+            initialDelayString = "${transactions.snapshot.interval-ms:300000}")
+    public void snapshot() {
+        try {
+            // once a sync has failed, memory may hold changes whose callers were told they failed, and a snapshot
+            // would make them durable; the state is only trusted again once a restart has replayed the log
+            writeAheadLog.checkWritable();
+            List<Path> snapshots = snapshots();
+            long lsn = writeAheadLog.checkpoint();
+            if (!snapshots.isEmpty() && lsnOf(snapshots.get(0)) == lsn) {
+                return;
+            }
+            write(lsn);
+            retain();
+        } catch (IOException ex) {
+            log.error("Failed to write snapshot to {}", directory, ex);
+        } catch (UncheckedIOException ex) {
+            log.error("Skipping snapshot, the write-ahead log has failed", ex);
+        }
+    }
+
+    private void write(long lsn) throws IOException {
+        Path target = snapshotPath(lsn);
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordOut = new DataOutputStream(record);
+            try (Stream<Account> accounts = accountRepository.streamAll()) {
+                Iterator<Account> iterator = accounts.iterator();
+                while (iterator.hasNext()) {
+                    record.reset();
+                    RecordCodec.writeAccount(recordOut, iterator.next());
+                    writeRecord(out, RecordCodec.ACCOUNT, record);
+                }
+            }
+            try (Stream<Transaction> transactions = transactionRepository.streamAll()) {
+                Iterator<Transaction> iterator = transactions.iterator();
+                while (iterator.hasNext()) {
+                    record.reset();
+                    RecordCodec.writeTransaction(recordOut, iterator.next());
+                    writeRecord(out, RecordCodec.TRANSACTION, record);
+                }
+            }
+            out.writeByte(END);
+            out.flush();
+            out.writeInt((int) crc.getValue());
+            out.flush();
+            channel.force(true);
+        }
+        // the checkpoint's records may still be on their way to disk, and the snapshot is only kept if they get there
+        try {
+            writeAheadLog.awaitDurable(lsn);
+            writeAheadLog.checkWritable();
+        } catch (UncheckedIOException ex) {
+            Files.delete(temporary);
+            throw ex;
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Wrote snapshot {}", target);
+    }
+
+    private static void writeRecord(DataOutputStream out, byte type, ByteArrayOutputStream record) throws IOException {
+        out.writeByte(type);
+        out.writeInt(record.size());
+        record.writeTo(out);
+    }
+
+    private long load(Path snapshot, Consumer<Transaction> transactionHandler,
+                      Consumer<Account> accountHandler) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedWindow window = new MappedWindow(channel);
+            ByteBuffer header = window.at(0, HEADER_SIZE);
+            header.getInt();
+            header.getInt();
+            long lsn = header.getLong();
+
+            long position = HEADER_SIZE;
+            while (true) {
+                ByteBuffer buffer = window.at(position, 1);
+                byte type = buffer.get();
+                if (type == END) {
+                    break;
+                }
+                int length = window.at(position + 1, Integer.BYTES).getInt();
+                buffer = window.at(position + RECORD_HEADER_SIZE, length);
+                int start = buffer.position();
+                switch (type) {
+                    case RecordCodec.ACCOUNT -> accountHandler.accept(RecordCodec.readAccount(buffer));
+                    case RecordCodec.TRANSACTION -> transactionHandler.accept(RecordCodec.readTransaction(buffer));
+                    default -> throw new IOException("Unknown snapshot record type " + type + " in " + snapshot);
+                }
+                if (buffer.position() - start != length) {
+                    throw new IOException("Corrupt snapshot record at offset " + position + " in " + snapshot);
+                }
+                position += RECORD_HEADER_SIZE + length;
+            }
+            log.info("Restored snapshot {}", snapshot);
+            return lsn;
+        }
+    }
+
+    private static boolean isIntact(Path snapshot) throws IOException {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 1 + Integer.BYTES) {
+                return false;
+            }
+            MappedWindow window = new MappedWindow(channel);
+            ByteBuffer header = window.at(0, HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                return false;
+            }
+            long end = size - Integer.BYTES;
+            CRC32 crc = new CRC32();
+            for (long position = 0; position < end; position += MAP_WINDOW) {
+                int length = (int) Math.min(MAP_WINDOW, end - position);
+                ByteBuffer buffer = window.at(position, length);
+                crc.update(buffer.limit(buffer.position() + length));
+            }
+            return window.at(end, Integer.BYTES).getInt() == (int) crc.getValue();
+        }
+    }
+
+    private void retain() throws IOException {
+        List<Path> snapshots = snapshots();
+        for (int i = RETAINED_SNAPSHOTS; i < snapshots.size(); i++) {
+            Files.delete(snapshots.get(i));
+        }
+        int oldestRetained = Math.min(RETAINED_SNAPSHOTS, snapshots.size()) - 1;
+        writeAheadLog.truncateBefore(lsnOf(snapshots.get(oldestRetained)));
+    }
+
+    // newest first
+    private List<Path> snapshots() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX);
+                    })
+                    .sorted(Comparator.reverseOrder())
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long lsnOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+    }
+
+    private Path snapshotPath(long lsn) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, lsn, SNAPSHOT_SUFFIX));
+    }
+
+    /**
+     * Maps the snapshot a window at a time, so files larger than a single mapping can be read and the
+     * address space in use stays bounded.
+     */
+    private static final class MappedWindow {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long start;
+
+        private MappedWindow(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        private ByteBuffer at(long position, int length) throws IOException {
+            if (position + length > size) {
+                throw new IOException("Snapshot ends unexpectedly at offset " + position);
+            }
+            if (buffer == null || position < start || position + length > start + buffer.capacity()) {
+                start = position;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(Math.max(MAP_WINDOW, length), size - start));
+            }
+            buffer.limit(buffer.capacity());
+            buffer.position((int) (position - start));
+            return buffer;
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.hauptman.banktransactions.persistence;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Transaction;
+
+import java.util.function.Consumer;
+
+public interface WriteAheadLog {
+    void appendTransaction(Transaction transaction);
+    void appendAccount(Account account);
+
+    // Records appended by the action reach the log as a single frame, or not at all if it throws.
+    void atomically(Runnable action);
+
+    // Throws if the log can no longer make changes durable, so a change can be refused before it is applied.
+    void checkWritable();
+
+    // Blocks until everything the calling thread appended is on disk.
+    void awaitDurable();
+
+    // Returns the lsn of the last record the calling thread appended, so another thread can wait for it.
+    long appendedLsn();
+
+    // Blocks until every record up to the given lsn is on disk.
+    void awaitDurable(long lsn);
+
+    // Returns the lsn up to which every record is on disk, without waiting.
+    long durableLsn();
+
+    // Replays the records logged after the given lsn, then opens the log. Nothing is logged before that, since
+    // until then the repositories are only being rebuilt from disk.
+    void replay(long afterLsn, Consumer<Transaction> transactionHandler, Consumer<Account> accountHandler);
+
+    // Returns the lsn of the last appended record; its effect and everything before it is already in memory.
+    long checkpoint();
+
+    // Drops log segments that only hold records up to the given lsn.
+    void truncateBefore(long lsn);
+}
@@ -0,0 +1,35 @@
+package com.hauptman.banktransactions.persistence;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reports the service down once the write-ahead log has failed to sync. Transactions applied just before the
+ * failure are visible but not on disk, so the instance stays down until a restart replays the log.
+ */
+@Component
+@ConditionalOnProperty(name = "transactions.wal.enabled", havingValue = "true")
+public class WriteAheadLogHealthIndicator implements HealthIndicator {
+
+    private final FileWriteAheadLog writeAheadLog;
+
+    @Autowired
+    public WriteAheadLogHealthIndicator(FileWriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    @Override
+    public Health health() {
+        IOException failure = writeAheadLog.getFailure();
+        if (failure != null) {
+            return Health.down(failure).build();
+        }
+        return Health.up().build();
+    }
+
+}
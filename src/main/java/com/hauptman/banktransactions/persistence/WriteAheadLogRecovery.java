@@ -0,0 +1,35 @@
+package com.hauptman.banktransactions.persistence;
+
+import com.hauptman.banktransactions.repository.AccountRepository;
+import com.hauptman.banktransactions.repository.TransactionRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+@Component
+public class WriteAheadLogRecovery {
+
+    private final WriteAheadLog writeAheadLog;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final ObjectProvider<SnapshotManager> snapshotManager;
+
+    @Autowired
+    public WriteAheadLogRecovery(WriteAheadLog writeAheadLog, TransactionRepository transactionRepository,
+                                 AccountRepository accountRepository, ObjectProvider<SnapshotManager> snapshotManager) {
+        this.writeAheadLog = writeAheadLog;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.snapshotManager = snapshotManager;
+    }
+
+    // Runs before the web server accepts requests, so traffic only ever sees the recovered state.
+    @PostConstruct
+    public void recover() {
+        SnapshotManager snapshots = snapshotManager.getIfAvailable();
+        long snapshotLsn = snapshots != null ? snapshots.restore(transactionRepository::create, accountRepository::save) : 0;
+        writeAheadLog.replay(snapshotLsn, transactionRepository::create, accountRepository::save);
+    }
+
+}
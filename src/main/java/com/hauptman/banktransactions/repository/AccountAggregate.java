@@ -0,0 +1,50 @@
+package com.hauptman.banktransactions.repository;
+
+import com.hauptman.banktransactions.dto.AccountSummary;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running totals of one account's transactions. Amounts are added as minor units to striped adders, so
+ * concurrent inserts into the same account do not contend on a single value. A summary read while a transaction
+ * is being added may include only part of it.
+ */
+final class AccountAggregate {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder debited = new LongAdder();
+    private final LongAdder fees = new LongAdder();
+    private final LongAccumulator minAmount = new LongAccumulator(Math::min, Long.MAX_VALUE);
+    private final LongAccumulator maxAmount = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    void add(Transaction transaction) {
+        long amount = transaction.getAmount().getMinorUnits();
+        long fee = transaction.getFee() != null ? transaction.getFee().getMinorUnits() : 0;
+        debited.add(amount);
+        debited.add(fee);
+        fees.add(fee);
+        minAmount.accumulate(amount);
+        maxAmount.accumulate(amount);
+        count.increment();
+    }
+
+    AccountSummary toSummary(String accountIban) {
+        long minorMin = minAmount.get();
+        long minorMax = maxAmount.get();
+        return new AccountSummary(
+                accountIban,
+                count.sum(),
+                Money.ofMinorUnits(debited.sum()),
+                Money.ofMinorUnits(fees.sum()),
+                minorMin == Long.MAX_VALUE ? null : Money.ofMinorUnits(minorMin),
+                minorMax == Long.MIN_VALUE ? null : Money.ofMinorUnits(minorMax));
+    }
+
+    static AccountSummary empty(String accountIban) {
+        return new AccountSummary(accountIban, 0, Money.ZERO, Money.ZERO, null, null);
+    }
+
+}
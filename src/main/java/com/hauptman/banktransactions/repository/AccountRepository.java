@@ -2,7 +2,11 @@ package com.hauptman.banktransactions.repository;
 
 import com.hauptman.banktransactions.dto.Account;
 
+import java.util.stream.Stream;
+
 public interface AccountRepository {
     void save(Account account);
     Account findByIban(String iban);
+    Stream<Account> streamAll();
+    long count();
 }
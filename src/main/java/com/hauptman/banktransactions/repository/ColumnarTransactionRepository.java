@@ -0,0 +1,356 @@
+package com.hauptman.banktransactions.repository;
+
+import com.hauptman.banktransactions.dto.AccountSummary;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionCursor;
+import com.hauptman.banktransactions.dto.TransactionDateCursor;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Currency;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps transactions in chunks of primitive columns instead of one object graph per transaction: amounts and
+ * fees as minor units plus their currency, dates as epoch seconds and nanos, and IBANs deduplicated so every
+ * row of an account shares one string. {@link Transaction} objects are only built when they are read.
+ */
+@Component
+@ConditionalOnProperty(name = "transactions.repository.storage", havingValue = "columnar")
+public class ColumnarTransactionRepository implements TransactionRepository {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final long NO_DATE = Long.MIN_VALUE;
+    private static final int FROM_PROBE = 0;
+    private static final int TO_PROBE = 1;
+    private static final int AFTER_PROBE = 2;
+
+    private final AtomicInteger nextRow = new AtomicInteger();
+    private volatile Chunk[] chunks = new Chunk[16];
+
+    private final Map<String, Integer> rowsByReference = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Integer>> rowsByAccount = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Integer>> rowsByAccountAndDate = new ConcurrentHashMap<>();
+    private final NavigableSet<Integer> rowsByDate = new ConcurrentSkipListSet<>(this::compareDates);
+    // date range bounds are negative row ids whose values live in the querying thread's probe, not in a chunk
+    private final ThreadLocal<DateProbe> dateProbes = ThreadLocal.withInitial(DateProbe::new);
+    private final Map<String, String> ibans = new ConcurrentHashMap<>();
+    private final Map<String, AccountAggregate> aggregatesByAccount = new ConcurrentHashMap<>();
+    private final WriteAheadLog writeAheadLog;
+
+    @Autowired
+    public ColumnarTransactionRepository(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
+
+    @Override
+    public Transaction create(Transaction transaction) {
+        Integer existing = rowsByReference.get(transaction.getReference());
+        if (existing != null) {
+            return read(existing);
+        }
+        // the row is fully written before it is published through the indexes, so readers never see it half done;
+        // a writer that loses the insert race leaves an unreferenced row behind
+        Integer row = nextRow.getAndIncrement();
+        write(row, transaction);
+        existing = rowsByReference.putIfAbsent(transaction.getReference(), row);
+        if (existing != null) {
+            return read(existing);
+        }
+        accountIndex(accountIban(row)).add(row);
+        if (chunk(row).epochSeconds[row & CHUNK_MASK] != NO_DATE) {
+            rowsByAccountAndDate
+                    .computeIfAbsent(accountIban(row), iban -> new ConcurrentSkipListSet<>(this::compareDates))
+                    .add(row);
+            rowsByDate.add(row);
+        }
+        aggregatesByAccount.computeIfAbsent(accountIban(row), iban -> new AccountAggregate()).add(transaction);
+        writeAheadLog.appendTransaction(transaction);
+        return transaction;
+    }
+
+    @Override
+    public Transaction findByReference(String reference) {
+        if (reference == null) {
+            return null;
+        }
+        Integer row = rowsByReference.get(reference);
+        return row == null ? null : read(row);
+    }
+
+    @Override
+    public Map<String, Transaction> findByReferences(Collection<String> references) {
+        Map<String, Transaction> found = new LinkedHashMap<>();
+        for (String reference : references) {
+            Transaction transaction = findByReference(reference);
+            if (transaction != null) {
+                found.put(reference, transaction);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public List<Transaction> findByAccountIban(String accountIban, boolean sortAscending) {
+        List<Transaction> transactions = new ArrayList<>();
+        NavigableSet<Integer> rows = orderedRows(accountIban, sortAscending);
+        if (rows != null) {
+            for (Integer row : rows) {
+                transactions.add(read(row));
+            }
+        }
+        return transactions;
+    }
+
+    @Override
+    public List<Transaction> findByAccountIban(String accountIban, boolean sortAscending, TransactionCursor after, int limit) {
+        List<Transaction> page = new ArrayList<>();
+        NavigableSet<Integer> rows = orderedRows(accountIban, sortAscending);
+        if (rows == null) {
+            return page;
+        }
+        boolean skipping = false;
+        if (after != null) {
+            // cursors point at a stored transaction, whose row can be used to position the index directly
+            Integer cursorRow = rowsByReference.get(after.getReference());
+            if (cursorRow != null && accountIban.equals(accountIban(cursorRow))
+                    && amount(cursorRow).compareTo(after.getAmount()) == 0) {
+                rows = rows.tailSet(cursorRow, false);
+            } else {
+                skipping = true;
+            }
+        }
+        for (Integer row : rows) {
+            if (page.size() >= limit) {
+                break;
+            }
+            if (skipping) {
+                int comparison = compareToCursor(row, after);
+                if (sortAscending ? comparison <= 0 : comparison >= 0) {
+                    continue;
+                }
+                skipping = false;
+            }
+            page.add(read(row));
+        }
+        return page;
+    }
+
+    @Override
+    public Stream<Transaction> streamByAccountIban(String accountIban, boolean sortAscending) {
+        NavigableSet<Integer> rows = orderedRows(accountIban, sortAscending);
+        return rows == null ? Stream.empty() : rows.stream().map(this::read);
+    }
+
+    @Override
+    public List<Transaction> findByDateRange(String accountIban, LocalDateTime from, LocalDateTime to, boolean sortAscending,
+                                             TransactionDateCursor after, int limit) {
+        List<Transaction> page = new ArrayList<>();
+        NavigableSet<Integer> index = accountIban != null ? rowsByAccountAndDate.get(accountIban) : rowsByDate;
+        if (index == null) {
+            return page;
+        }
+        DateProbe probe = dateProbes.get();
+        NavigableSet<Integer> range;
+        if (from != null && to != null) {
+            range = index.subSet(probe.set(FROM_PROBE, from, ""), true, probe.set(TO_PROBE, to, ""), false);
+        } else if (from != null) {
+            range = index.tailSet(probe.set(FROM_PROBE, from, ""), true);
+        } else if (to != null) {
+            range = index.headSet(probe.set(TO_PROBE, to, ""), false);
+        } else {
+            range = index;
+        }
+        NavigableSet<Integer> ordered = sortAscending ? range : range.descendingSet();
+        if (after != null) {
+            ordered = ordered.tailSet(probe.set(AFTER_PROBE, after.getDate(), after.getReference()), false);
+        }
+        for (Integer row : ordered) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(read(row));
+        }
+        return page;
+    }
+
+    @Override
+    public Stream<Transaction> streamAll() {
+        return rowsByReference.values().stream().map(this::read);
+    }
+
+    @Override
+    public long count() {
+        return rowsByReference.size();
+    }
+
+    @Override
+    public int countAccounts() {
+        return rowsByAccount.size();
+    }
+
+    @Override
+    public AccountSummary summarize(String accountIban) {
+        AccountAggregate aggregate = aggregatesByAccount.get(accountIban);
+        return aggregate != null ? aggregate.toSummary(accountIban) : AccountAggregate.empty(accountIban);
+    }
+
+    private NavigableSet<Integer> orderedRows(String accountIban, boolean sortAscending) {
+        if (accountIban == null) {
+            return null;
+        }
+        NavigableSet<Integer> rows = rowsByAccount.get(accountIban);
+        if (rows == null) {
+            return null;
+        }
+        return sortAscending ? rows : rows.descendingSet();
+    }
+
+    private NavigableSet<Integer> accountIndex(String accountIban) {
+        return rowsByAccount.computeIfAbsent(accountIban, iban -> new ConcurrentSkipListSet<>(this::compareRows));
+    }
+
+    private int compareRows(Integer left, Integer right) {
+        Chunk leftChunk = chunk(left);
+        Chunk rightChunk = chunk(right);
+        int l = left & CHUNK_MASK;
+        int r = right & CHUNK_MASK;
+        int comparison = Long.compare(leftChunk.amounts[l], rightChunk.amounts[r]);
+        return comparison != 0 ? comparison : leftChunk.references[l].compareTo(rightChunk.references[r]);
+    }
+
+    private int compareDates(Integer left, Integer right) {
+        DateProbe probe = left < 0 || right < 0 ? dateProbes.get() : null;
+        int comparison = Long.compare(epochSecond(left, probe), epochSecond(right, probe));
+        if (comparison == 0) {
+            comparison = Integer.compare(nano(left, probe), nano(right, probe));
+        }
+        return comparison != 0 ? comparison : reference(left, probe).compareTo(reference(right, probe));
+    }
+
+    private long epochSecond(int row, DateProbe probe) {
+        return row < 0 ? probe.epochSeconds[-row - 1] : chunk(row).epochSeconds[row & CHUNK_MASK];
+    }
+
+    private int nano(int row, DateProbe probe) {
+        return row < 0 ? probe.nanos[-row - 1] : chunk(row).nanos[row & CHUNK_MASK];
+    }
+
+    private String reference(int row, DateProbe probe) {
+        return row < 0 ? probe.references[-row - 1] : chunk(row).references[row & CHUNK_MASK];
+    }
+
+    private int compareToCursor(int row, TransactionCursor cursor) {
+        int comparison = amount(row).compareTo(cursor.getAmount());
+        return comparison != 0 ? comparison : chunk(row).references[row & CHUNK_MASK].compareTo(cursor.getReference());
+    }
+
+    private void write(int row, Transaction transaction) {
+        Chunk chunk = chunkForWrite(row);
+        int i = row & CHUNK_MASK;
+        chunk.references[i] = transaction.getReference();
+        chunk.accountIbans[i] = ibans.computeIfAbsent(transaction.getAccountIban(), iban -> iban);
+        LocalDateTime date = transaction.getDate();
+        chunk.epochSeconds[i] = date == null ? NO_DATE : date.toEpochSecond(ZoneOffset.UTC);
+        chunk.nanos[i] = date == null ? 0 : date.getNano();
+        if (transaction.getAmount() == null || transaction.getFee() == null) {
+            throw new IllegalArgumentException("Transaction amounts are required");
+        }
+        // an account holds a single currency, so rows compare by minor units alone
+        chunk.amounts[i] = transaction.getAmount().getMinorUnits();
+        chunk.fees[i] = transaction.getFee().getMinorUnits();
+        chunk.currencies[i] = transaction.getAmount().getCurrency();
+        chunk.descriptions[i] = transaction.getDescription();
+    }
+
+    private Transaction read(int row) {
+        Chunk chunk = chunk(row);
+        int i = row & CHUNK_MASK;
+        LocalDateTime date = chunk.epochSeconds[i] == NO_DATE
+                ? null
+                : LocalDateTime.ofEpochSecond(chunk.epochSeconds[i], chunk.nanos[i], ZoneOffset.UTC);
+        return new Transaction(
+                chunk.references[i],
+                chunk.accountIbans[i],
+                date,
+                Money.ofMinorUnits(chunk.amounts[i], chunk.currencies[i]),
+                Money.ofMinorUnits(chunk.fees[i], chunk.currencies[i]),
+                chunk.descriptions[i]);
+    }
+
+    private Money amount(int row) {
+        Chunk chunk = chunk(row);
+        int i = row & CHUNK_MASK;
+        return Money.ofMinorUnits(chunk.amounts[i], chunk.currencies[i]);
+    }
+
+    private String accountIban(int row) {
+        return chunk(row).accountIbans[row & CHUNK_MASK];
+    }
+
+    private Chunk chunk(int row) {
+        return chunks[row >>> CHUNK_BITS];
+    }
+
+    private Chunk chunkForWrite(int row) {
+        int index = row >>> CHUNK_BITS;
+        Chunk[] current = chunks;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        synchronized (this) {
+            current = chunks;
+            if (index >= current.length) {
+                current = Arrays.copyOf(current, Math.max(index + 1, current.length * 2));
+            }
+            if (current[index] == null) {
+                current[index] = new Chunk();
+            }
+            chunks = current;
+            return current[index];
+        }
+    }
+
+    private static final class DateProbe {
+        private final long[] epochSeconds = new long[3];
+        private final int[] nanos = new int[3];
+        private final String[] references = new String[3];
+
+        // with the empty reference the probe sorts before every row at that date
+        private Integer set(int slot, LocalDateTime date, String reference) {
+            epochSeconds[slot] = date.toEpochSecond(ZoneOffset.UTC);
+            nanos[slot] = date.getNano();
+            references[slot] = reference;
+            return -slot - 1;
+        }
+    }
+
+    private static final class Chunk {
+        private final String[] references = new String[CHUNK_SIZE];
+        private final String[] accountIbans = new String[CHUNK_SIZE];
+        private final String[] descriptions = new String[CHUNK_SIZE];
+        private final long[] epochSeconds = new long[CHUNK_SIZE];
+        private final int[] nanos = new int[CHUNK_SIZE];
+        private final long[] amounts = new long[CHUNK_SIZE];
+        private final long[] fees = new long[CHUNK_SIZE];
+        private final Currency[] currencies = new Currency[CHUNK_SIZE];
+    }
+
+}
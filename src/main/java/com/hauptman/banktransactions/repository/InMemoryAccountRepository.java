@@ -1,19 +1,29 @@
 package com.hauptman.banktransactions.repository;
 
 import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 @Component
 public class InMemoryAccountRepository implements AccountRepository {
 
     private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final WriteAheadLog writeAheadLog;
+
+    @Autowired
+    public InMemoryAccountRepository(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
 
     @Override
     public void save(Account account) {
         accounts.put(account.getIban(), account);
+        writeAheadLog.appendAccount(account);
     }
 
     @Override
@@ -25,5 +35,15 @@ public class InMemoryAccountRepository implements AccountRepository {
         return account;
     }
 
+    @Override
+    public Stream<Account> streamAll() {
+        return accounts.values().stream();
+    }
+
+    @Override
+    public long count() {
+        return accounts.size();
+    }
+
 }
 
@@ -1,47 +1,198 @@
 package com.hauptman.banktransactions.repository;
 
+import com.hauptman.banktransactions.dto.AccountSummary;
 import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionCursor;
+import com.hauptman.banktransactions.dto.TransactionDateCursor;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
 
 @Component
+@ConditionalOnProperty(name = "transactions.repository.storage", havingValue = "object", matchIfMissing = true)
 public class InMemoryTransactionRepository implements TransactionRepository {
 
+    // Reference breaks ties so transactions with the same amount are kept apart in the index.
+    private static final Comparator<Transaction> BY_AMOUNT = Comparator
+            .comparing(Transaction::getAmount)
+            .thenComparing(Transaction::getReference);
+    private static final Comparator<Transaction> BY_DATE = Comparator
+            .comparing(Transaction::getDate)
+            .thenComparing(Transaction::getReference);
+
     private final Map<String, Transaction> transactions = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Transaction>> transactionsByAccount = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<Transaction>> transactionsByAccountAndDate = new ConcurrentHashMap<>();
+    private final NavigableSet<Transaction> transactionsByDate = new ConcurrentSkipListSet<>(BY_DATE);
+    private final Map<String, AccountAggregate> aggregatesByAccount = new ConcurrentHashMap<>();
+    private final WriteAheadLog writeAheadLog;
+
+    @Autowired
+    public InMemoryTransactionRepository(WriteAheadLog writeAheadLog) {
+        this.writeAheadLog = writeAheadLog;
+    }
 
     @Override
-    public void create(Transaction transaction) {
-        transactions.put(transaction.getReference(), transaction);
+    public Transaction create(Transaction transaction) {
+        // only the writer that wins the insert indexes and logs the transaction, so a retry can never replace it
+        Transaction existing = transactions.putIfAbsent(transaction.getReference(), transaction);
+        if (existing != null) {
+            return existing;
+        }
+        accountIndex(transaction.getAccountIban()).add(transaction);
+        if (transaction.getDate() != null) {
+            transactionsByAccountAndDate
+                    .computeIfAbsent(transaction.getAccountIban(), iban -> new ConcurrentSkipListSet<>(BY_DATE))
+                    .add(transaction);
+            transactionsByDate.add(transaction);
+        }
+        aggregatesByAccount.computeIfAbsent(transaction.getAccountIban(), iban -> new AccountAggregate()).add(transaction);
+        writeAheadLog.appendTransaction(transaction);
+        return transaction;
     }
 
     @Override
     public Transaction findByReference(String reference) {
-        for (Transaction transaction : transactions.values()) {
-            if (transaction.getReference().equals(reference)) {
-                return transaction;
+        if (reference == null) {
+            return null;
+        }
+        return transactions.get(reference);
+    }
+
+    @Override
+    public Map<String, Transaction> findByReferences(Collection<String> references) {
+        Map<String, Transaction> found = new LinkedHashMap<>();
+        for (String reference : references) {
+            Transaction transaction = findByReference(reference);
+            if (transaction != null) {
+                found.put(reference, transaction);
             }
         }
-        return null;
+        return found;
     }
 
 
     @Override
     public List<Transaction> findByAccountIban(String accountIban, boolean sortAscending) {
-        List<Transaction> filteredTransactions = transactions.values()
-                .stream()
-                .filter(t -> t.getAccountIban().equals(accountIban))
-                .collect(Collectors.toList());
-        if (sortAscending) {
-            filteredTransactions.sort(Comparator.comparing(Transaction::getAmount));
+        if (accountIban == null) {
+            return new ArrayList<>();
+        }
+        NavigableSet<Transaction> accountTransactions = transactionsByAccount.get(accountIban);
+        if (accountTransactions == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(sortAscending ? accountTransactions : accountTransactions.descendingSet());
+    }
+
+    @Override
+    public List<Transaction> findByAccountIban(String accountIban, boolean sortAscending, TransactionCursor after, int limit) {
+        List<Transaction> page = new ArrayList<>();
+        if (accountIban == null) {
+            return page;
+        }
+        NavigableSet<Transaction> accountTransactions = transactionsByAccount.get(accountIban);
+        if (accountTransactions == null) {
+            return page;
+        }
+        NavigableSet<Transaction> ordered = sortAscending ? accountTransactions : accountTransactions.descendingSet();
+        if (after != null) {
+            Transaction key = new Transaction(after.getReference(), accountIban, null, after.getAmount(), null, null);
+            ordered = ordered.tailSet(key, false);
+        }
+        for (Transaction transaction : ordered) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(transaction);
+        }
+        return page;
+    }
+
+    @Override
+    public Stream<Transaction> streamByAccountIban(String accountIban, boolean sortAscending) {
+        if (accountIban == null) {
+            return Stream.empty();
+        }
+        NavigableSet<Transaction> accountTransactions = transactionsByAccount.get(accountIban);
+        if (accountTransactions == null) {
+            return Stream.empty();
+        }
+        // the skip list iterator is weakly consistent, so this walks the live index without copying it
+        return (sortAscending ? accountTransactions : accountTransactions.descendingSet()).stream();
+    }
+
+    @Override
+    public List<Transaction> findByDateRange(String accountIban, LocalDateTime from, LocalDateTime to, boolean sortAscending,
+                                             TransactionDateCursor after, int limit) {
+        List<Transaction> page = new ArrayList<>();
+        NavigableSet<Transaction> index = accountIban != null ? transactionsByAccountAndDate.get(accountIban) : transactionsByDate;
+        if (index == null) {
+            return page;
+        }
+        NavigableSet<Transaction> range;
+        if (from != null && to != null) {
+            range = index.subSet(dateProbe(from, ""), true, dateProbe(to, ""), false);
+        } else if (from != null) {
+            range = index.tailSet(dateProbe(from, ""), true);
+        } else if (to != null) {
+            range = index.headSet(dateProbe(to, ""), false);
         } else {
-            filteredTransactions.sort(Comparator.comparing(Transaction::getAmount).reversed());
+            range = index;
+        }
+        NavigableSet<Transaction> ordered = sortAscending ? range : range.descendingSet();
+        if (after != null) {
+            ordered = ordered.tailSet(dateProbe(after.getDate(), after.getReference()), false);
+        }
+        for (Transaction transaction : ordered) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(transaction);
         }
-        return filteredTransactions;
+        return page;
+    }
+
+    @Override
+    public Stream<Transaction> streamAll() {
+        return transactions.values().stream();
+    }
+
+    @Override
+    public long count() {
+        return transactions.size();
+    }
+
+    @Override
+    public int countAccounts() {
+        return transactionsByAccount.size();
+    }
+
+    @Override
+    public AccountSummary summarize(String accountIban) {
+        AccountAggregate aggregate = aggregatesByAccount.get(accountIban);
+        return aggregate != null ? aggregate.toSummary(accountIban) : AccountAggregate.empty(accountIban);
+    }
+
+    // with the empty reference the probe sorts before every transaction at that date
+    private static Transaction dateProbe(LocalDateTime date, String reference) {
+        return new Transaction(reference, null, date, null, null, null);
+    }
+
+    private NavigableSet<Transaction> accountIndex(String accountIban) {
+        return transactionsByAccount.computeIfAbsent(accountIban, iban -> new ConcurrentSkipListSet<>(BY_AMOUNT));
     }
 
 }
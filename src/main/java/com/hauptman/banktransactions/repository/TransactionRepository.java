@@ -1,14 +1,37 @@
 package com.hauptman.banktransactions.repository;
 
+import com.hauptman.banktransactions.dto.AccountSummary;
 import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionCursor;
+import com.hauptman.banktransactions.dto.TransactionDateCursor;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Repository
 public interface TransactionRepository {
-    void create(Transaction transaction);
+    /**
+     * Stores the transaction unless one with the same reference exists, and returns whichever is stored.
+     */
+    Transaction create(Transaction transaction);
     Transaction findByReference(String reference);
+    Map<String, Transaction> findByReferences(Collection<String> references);
     List<Transaction> findByAccountIban(String accountIban, boolean sortAscending);
+    List<Transaction> findByAccountIban(String accountIban, boolean sortAscending, TransactionCursor after, int limit);
+    Stream<Transaction> streamByAccountIban(String accountIban, boolean sortAscending);
+    /**
+     * Transactions dated from {@code from} inclusive to {@code to} exclusive, ordered by date. Either bound may be
+     * null, and a null IBAN searches every account.
+     */
+    List<Transaction> findByDateRange(String accountIban, LocalDateTime from, LocalDateTime to, boolean sortAscending,
+                                      TransactionDateCursor after, int limit);
+    Stream<Transaction> streamAll();
+    long count();
+    int countAccounts();
+    AccountSummary summarize(String accountIban);
 }
 
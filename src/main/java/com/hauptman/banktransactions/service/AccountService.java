@@ -1,43 +1,258 @@
 package com.hauptman.banktransactions.service;
 
 import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
 import com.hauptman.banktransactions.repository.AccountRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
 
 @Service
 public class AccountService {
 
+    public static final String INSUFFICIENT_FUNDS = "Transaction not allowed: insufficient funds";
+
+    // Power of two so the stripe can be picked with a mask; IBANs sharing a stripe share a lock.
+    private static final int LOCK_STRIPES = 256;
+
     private final AccountRepository accountRepository;
+    private final WriteAheadLog writeAheadLog;
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+    // null unless accounts are sharded, in which case writes go to the shard writers instead of the locks
+    private final AccountShards shards;
+    private final Counter insufficientFunds;
 
     @Autowired
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(AccountRepository accountRepository, WriteAheadLog writeAheadLog,
+                          @Value("${transactions.shards.count:0}") int shardCount, MeterRegistry meterRegistry) {
+        if (shardCount < 0) {
+            throw new IllegalArgumentException("Shard count must not be negative");
+        }
         this.accountRepository = accountRepository;
+        this.writeAheadLog = writeAheadLog;
+        this.shards = shardCount > 0 ? new AccountShards(shardCount) : null;
+        this.insufficientFunds = Counter.builder("transactions.insufficient.funds")
+                .description("Debits rejected because the account could not cover them")
+                .register(meterRegistry);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
     }
 
     public Account getAccountByIban(String iban) {
         return accountRepository.findByIban(iban);
     }
 
-    public void updateAccountBalance(String iban, BigDecimal amount) {
-        Account account = accountRepository.findByIban(iban);
-        BigDecimal balance = account.getBalance().add(amount);
-        account.setBalance(balance);
-        accountRepository.save(account);
+    public void updateAccountBalance(String iban, Money amount) {
+        long lsn = write(iban, () -> {
+            Account account = accountRepository.findByIban(iban);
+            accountRepository.save(new Account(iban, credit(account.getBalance(), amount)));
+        });
+        writeAheadLog.awaitDurable(lsn);
+    }
+
+    public void debit(String iban, Money amount) {
+        debit(iban, amount, () -> true);
+    }
+
+    /**
+     * Debits the account and runs {@code onDebited} before its lock or shard is released, so whatever the debit pays for
+     * is stored together with the new balance. Nothing is changed if there are not enough funds, the callback
+     * returns false or the callback throws. Returns whether the balance was debited.
+     */
+    public boolean debit(String iban, Money amount, BooleanSupplier onDebited) {
+        boolean[] debited = new boolean[1];
+        long lsn = write(iban, () -> writeAheadLog.atomically(() -> {
+            Account account = accountRepository.findByIban(iban);
+            Money balance = account.getBalance().minus(amount);
+            if (balance.signum() < 0) {
+                insufficientFunds.increment();
+                throw new IllegalArgumentException(INSUFFICIENT_FUNDS);
+            }
+            if (onDebited.getAsBoolean()) {
+                // a fresh Account is stored on every change so readers never see a balance mid-update
+                accountRepository.save(new Account(iban, balance));
+                debited[0] = true;
+            }
+        }));
+        writeAheadLog.awaitDurable(lsn);
+        return debited[0];
+    }
+
+    public void transfer(String fromIban, String toIban, Money amount) {
+        transfer(fromIban, toIban, amount, () -> true);
+    }
+
+    /**
+     * Moves the amount from one account to the other in a single logged change and runs {@code onTransferred}
+     * before either account is released, as {@link #debit} does. Both accounts are held for the change and are
+     * always taken in the same order, so transfers in opposite directions cannot deadlock, while transfers between
+     * other accounts go ahead in parallel. Returns whether the balances were changed.
+     */
+    public boolean transfer(String fromIban, String toIban, Money amount, BooleanSupplier onTransferred) {
+        if (fromIban.equals(toIban)) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        boolean[] transferred = new boolean[1];
+        long lsn = write(fromIban, toIban, () -> writeAheadLog.atomically(() -> {
+            Account from = accountRepository.findByIban(fromIban);
+            Account to = accountRepository.findByIban(toIban);
+            Money balance = from.getBalance().minus(amount);
+            if (balance.signum() < 0) {
+                insufficientFunds.increment();
+                throw new IllegalArgumentException(INSUFFICIENT_FUNDS);
+            }
+            // both balances are worked out before the callback, so a refused credit leaves nothing stored
+            Money credited = credit(to.getBalance(), amount);
+            if (onTransferred.getAsBoolean()) {
+                accountRepository.save(new Account(fromIban, balance));
+                accountRepository.save(new Account(toIban, credited));
+                transferred[0] = true;
+            }
+        }));
+        writeAheadLog.awaitDurable(lsn);
+        return transferred[0];
+    }
+
+    /**
+     * Applies the debits in order with a single balance update. A debit is accepted when the account can still
+     * cover it and {@code onDebited} returns true for its index.
+     */
+    public boolean[] debitAll(String iban, List<Money> amounts, IntPredicate onDebited) {
+        boolean[] accepted = new boolean[amounts.size()];
+        writeAheadLog.awaitDurable(applyDebits(iban, amounts, onDebited, accepted));
+        return accepted;
+    }
+
+    /**
+     * {@link #debitAll} without waiting for the log: marks the accepted debits and returns the lsn that makes
+     * them durable, for callers that wait once for several accounts.
+     */
+    long applyDebits(String iban, List<Money> amounts, IntPredicate onDebited, boolean[] accepted) {
+        return write(iban, () -> writeAheadLog.atomically(() -> {
+            Account account = accountRepository.findByIban(iban);
+            Money balance = account.getBalance();
+            for (int i = 0; i < amounts.size(); i++) {
+                Money remaining = balance.minus(amounts.get(i));
+                if (remaining.signum() < 0) {
+                    insufficientFunds.increment();
+                } else if (onDebited.test(i)) {
+                    balance = remaining;
+                    accepted[i] = true;
+                }
+            }
+            accountRepository.save(new Account(iban, balance));
+        }));
+    }
+
+    void awaitDurable(long lsn) {
+        writeAheadLog.awaitDurable(lsn);
     }
 
     public void createAccount(Account account) {
         if (account.getIban() == null || account.getIban().isEmpty()) {
             throw new IllegalArgumentException("Account IBAN is required");
         }
-        if (account.getBalance() == null || account.getBalance().compareTo(BigDecimal.ZERO) < 0) {
+        if (account.getBalance() == null || account.getBalance().signum() < 0) {
             throw new IllegalArgumentException("Account balance must be a positive number");
         }
 
-        accountRepository.save(account);
+        long lsn = write(account.getIban(), () -> accountRepository.save(new Account(account.getIban(), account.getBalance())));
+        writeAheadLog.awaitDurable(lsn);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (shards != null) {
+            shards.close();
+        }
+    }
+
+    /**
+     * Applies the change under the account's lock, or on its shard writer when accounts are sharded, and returns
+     * the lsn of what it logged. Callers wait for the log afterwards, so neither the lock nor the writer is held
+     * while the log syncs.
+     * Once the log has failed, the change is refused before it is applied, so memory does not run further ahead
+     * of the disk.
+     */
+    private long write(String iban, Runnable change) {
+        if (shards != null) {
+            return shards.execute(iban, () -> {
+                writeAheadLog.checkWritable();
+                change.run();
+                return writeAheadLog.appendedLsn();
+            });
+        }
+        Lock lock = lockFor(iban);
+        lock.lock();
+        try {
+            writeAheadLog.checkWritable();
+            change.run();
+        } finally {
+            lock.unlock();
+        }
+        return writeAheadLog.appendedLsn();
+    }
+
+    /**
+     * {@link #write(String, Runnable)} for a change to two accounts. Their stripes are locked in index order, or
+     * their shards taken in index order, so two changes to the same pair of accounts can never each hold one and
+     * wait for the other.
+     */
+    private long write(String iban, String otherIban, Runnable change) {
+        if (shards != null) {
+            return shards.execute(iban, otherIban, () -> {
+                writeAheadLog.checkWritable();
+                change.run();
+                return writeAheadLog.appendedLsn();
+            });
+        }
+        int stripe = stripeOf(iban);
+        int otherStripe = stripeOf(otherIban);
+        Lock first = locks[Math.min(stripe, otherStripe)];
+        Lock second = locks[Math.max(stripe, otherStripe)];
+        first.lock();
+        try {
+            // the same lock again when both share a stripe, which a reentrant lock allows
+            second.lock();
+            try {
+                writeAheadLog.checkWritable();
+                change.run();
+            } finally {
+                second.unlock();
+            }
+        } finally {
+            first.unlock();
+        }
+        return writeAheadLog.appendedLsn();
+    }
+
+    private Lock lockFor(String iban) {
+        return locks[stripeOf(iban)];
     }
 
+    // a balance that would no longer fit in minor units is refused rather than wrapped around
+    private static Money credit(Money balance, Money amount) {
+        try {
+            return balance.plus(amount);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Transaction not allowed: balance out of range", ex);
+        }
+    }
+
+    private static int stripeOf(String iban) {
+        int hash = iban.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
 
 }
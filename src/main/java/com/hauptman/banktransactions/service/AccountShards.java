@@ -0,0 +1,87 @@
+package com.hauptman.banktransactions.service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Partitions accounts by IBAN hash into shards that each own a single writer thread. Every balance change of an
+ * account, and the transactions it pays for, is applied by its shard's writer, so writes to accounts on
+ * different shards never contend and a busy account only queues work behind its own shard.
+ */
+final class AccountShards {
+
+    private final ExecutorService[] writers;
+    private final Thread[] threads;
+
+    AccountShards(int count) {
+        writers = new ExecutorService[count];
+        threads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            int shard = i;
+            writers[i] = Executors.newSingleThreadExecutor(task -> {
+                Thread thread = new Thread(task, "account-shard-" + shard);
+                thread.setDaemon(true);
+                threads[shard] = thread;
+                return thread;
+            });
+        }
+    }
+
+    int shardOf(String iban) {
+        int hash = iban.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), writers.length);
+    }
+
+    /**
+     * Runs the work on the account's shard writer and waits for its result, rethrowing whatever it threw.
+     */
+    <T> T execute(String iban, Supplier<T> work) {
+        return execute(shardOf(iban), work);
+    }
+
+    /**
+     * Runs the work with both accounts' shards held: the lower shard's writer waits while the higher one runs it.
+     * A writer only ever waits on a higher shard, so work spanning shards cannot deadlock.
+     */
+    <T> T execute(String iban, String otherIban, Supplier<T> work) {
+        int shard = shardOf(iban);
+        int otherShard = shardOf(otherIban);
+        if (shard == otherShard) {
+            return execute(shard, work);
+        }
+        int higher = Math.max(shard, otherShard);
+        return execute(Math.min(shard, otherShard), () -> execute(higher, work));
+    }
+
+    private <T> T execute(int shard, Supplier<T> work) {
+        if (Thread.currentThread() == threads[shard]) {
+            return work.get();
+        }
+        Future<T> result = writers[shard].submit(work::get);
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Account shard " + shard + " failed", cause);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for account shard " + shard, ex);
+        }
+    }
+
+    void close() {
+        for (ExecutorService writer : writers) {
+            writer.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,424 @@
+package com.hauptman.banktransactions.service;
+
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Push feed of newly created transactions. Publishing only takes the next offset from a counter and stores the
+ * transaction in a history ring of the most recent ones; it takes no lock and signals no thread, so it is cheap
+ * to do while an account is held. A dispatcher thread follows the ring in offset order and hands each
+ * transaction to the matching subscribers once the write-ahead log holds it, so a subscriber is never told of a
+ * transaction a crash could still lose, and a subscriber can resume after the last offset it saw. Each
+ * subscriber has its own bounded buffer, filled by the dispatcher without ever waiting and drained by a sender
+ * thread; a subscriber that falls a full buffer behind is disconnected to resume later, instead of holding up
+ * the others or growing the heap. Offsets live in memory and start again from 1 when the service restarts, so
+ * subscribers are given event ids that carry the epoch of the feed that assigned them, and an id from an earlier
+ * run is refused rather than taken for an offset of this one.
+ */
+@Component
+public class TransactionFeed {
+
+    /**
+     * Where a subscriber's transactions go. Sends happen on a sender thread and may block.
+     */
+    public interface Sink {
+        // the id is the transaction's offset prefixed with the feed's epoch, to be passed back to resume after it
+        void send(String id, Transaction transaction) throws IOException;
+
+        // the feed will not send anything more, because the subscriber lagged, failed or the feed shut down
+        void close(String reason);
+    }
+
+    public interface Subscription {
+        void cancel();
+    }
+
+    // bounds one sender run, so a subscriber with a deep backlog does not keep a thread from the others
+    private static final int MAX_SENDS_PER_RUN = 256;
+    // the lsn of a published transaction until its write returns; nothing is that durable, so it is held back
+    private static final long UNLOGGED = Long.MAX_VALUE;
+    // the dispatcher polls the ring, as publishers never wake it; idle with nobody to send to, it polls less often
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // random per run, so the ids of one run are never mistaken for those of another
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong(Long.MAX_VALUE), 36);
+    private final AtomicLong lastOffset = new AtomicLong();
+    private final AtomicReferenceArray<Event> history;
+    private final WriteAheadLog writeAheadLog;
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Queue<Runnable> commands = new ConcurrentLinkedQueue<>();
+
+    // only touched by the dispatcher thread
+    private long nextOffset = 1;
+    private final Set<Subscriber> allAccountSubscribers = new HashSet<>();
+    private final Map<String, Set<Subscriber>> subscribersByAccount = new HashMap<>();
+
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final ExecutorService senders;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+    private final Counter lagged;
+
+    @Autowired
+    public TransactionFeed(@Value("${transactions.feed.history:10000}") int historySize,
+                           @Value("${transactions.feed.buffer:1000}") int bufferSize,
+                           @Value("${transactions.feed.max-subscribers:1000}") int maxSubscribers,
+                           WriteAheadLog writeAheadLog, MeterRegistry meterRegistry) {
+        if (historySize <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("Feed history and buffer sizes must be positive");
+        }
+        this.history = new AtomicReferenceArray<>(historySize);
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.writeAheadLog = writeAheadLog;
+        // a sender blocks while writing to a slow client, so threads are only bounded by the subscriber limit
+        this.senders = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "transaction-feed");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.lagged = Counter.builder("transactions.feed.lagged")
+                .description("Feed subscribers disconnected for falling a full buffer behind")
+                .register(meterRegistry);
+        Gauge.builder("transactions.feed.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Connected feed subscribers")
+                .register(meterRegistry);
+        this.dispatcher = new Thread(this::dispatch, "transaction-feed-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Assigns the transaction the next offset and stores it for the dispatcher. Callers publish while they hold
+     * the account, so each account's transactions get increasing offsets in the order they were applied. The
+     * transaction is held back, with every one after it, until {@link #logged} gives the lsn that makes it
+     * durable.
+     */
+    public long publish(Transaction transaction) {
+        long offset = lastOffset.incrementAndGet();
+        history.set(slot(offset), new Event(offset, transaction));
+        return offset;
+    }
+
+    /**
+     * Records the lsn of the write that stored a published transaction; it is handed out once the log is on disk
+     * up to that lsn. A write that failed is never logged, and as the log takes no more writes after a failure,
+     * the feed stops at it too.
+     */
+    public void logged(long offset, long lsn) {
+        Event event = history.get(slot(offset));
+        // an event already overwritten is skipped by the dispatcher
+        if (event != null && event.offset == offset) {
+            event.lsn = lsn;
+        }
+    }
+
+    /**
+     * Subscribes to the transactions of one account, or of all accounts when the IBAN is null, starting after
+     * the given event id or with the next transaction when it is null. Throws {@link IllegalArgumentException}
+     * when the id was not given out by this run of the feed or the transactions after it are no longer retained,
+     * and {@link IllegalStateException} when the feed has as many subscribers as it allows.
+     */
+    public Subscription subscribe(String accountIban, String afterId, Sink sink) {
+        Long after = afterId != null ? offsetOf(afterId) : null;
+        if (!running) {
+            throw new IllegalStateException("The feed is shutting down");
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("The feed has reached its limit of " + maxSubscribers + " subscribers");
+        }
+        Subscriber subscriber = new Subscriber(accountIban, sink);
+        CompletableFuture<Subscriber> added = new CompletableFuture<>();
+        // the dispatcher adds the subscriber between two transactions, so the replay and the live transactions
+        // meet without a gap or a duplicate
+        commands.add(() -> {
+            try {
+                add(subscriber, after);
+                added.complete(subscriber);
+            } catch (RuntimeException ex) {
+                subscriberCount.decrementAndGet();
+                added.completeExceptionally(ex);
+            }
+        });
+        LockSupport.unpark(dispatcher);
+        try {
+            while (true) {
+                try {
+                    return added.get(100, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException ex) {
+                    if (!dispatcher.isAlive() && !added.isDone()) {
+                        subscriberCount.decrementAndGet();
+                        throw new IllegalStateException("The feed is shutting down");
+                    }
+                }
+            }
+        } catch (ExecutionException ex) {
+            throw (RuntimeException) ex.getCause();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while subscribing to the feed", ex);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        try {
+            dispatcher.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        senders.shutdown();
+    }
+
+    private void dispatch() {
+        while (running) {
+            Runnable command = commands.poll();
+            if (command != null) {
+                command.run();
+                continue;
+            }
+            Event event = history.get(slot(nextOffset));
+            if (event != null && event.offset == nextOffset && event.lsn <= writeAheadLog.durableLsn()) {
+                offer(event);
+                nextOffset++;
+            } else if (event != null && event.offset > nextOffset) {
+                skipOverwritten();
+            } else {
+                // the slot is still empty or holds an older transaction, or the next transaction is not durable yet
+                LockSupport.parkNanos(this, subscriberCount.get() > 0 ? POLL_NANOS : IDLE_POLL_NANOS);
+            }
+        }
+        for (Runnable command = commands.poll(); command != null; command = commands.poll()) {
+            command.run();
+        }
+        for (Subscriber subscriber : subscribers()) {
+            subscriber.close("The feed is shutting down");
+        }
+    }
+
+    private void offer(Event event) {
+        for (Subscriber subscriber : allAccountSubscribers) {
+            subscriber.offer(event);
+        }
+        Set<Subscriber> accountSubscribers = subscribersByAccount.get(event.transaction.getAccountIban());
+        if (accountSubscribers != null) {
+            for (Subscriber subscriber : accountSubscribers) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    /**
+     * Publishers got a full ring ahead of the dispatcher and overwrote transactions it had not handed out yet.
+     * Every subscriber would miss them, so all are disconnected to resume from their last offset, and the
+     * dispatcher carries on from the oldest transaction still retained.
+     */
+    private void skipOverwritten() {
+        for (Subscriber subscriber : subscribers()) {
+            lagged.increment();
+            subscriber.close("The feed fell more than " + history.length() + " transactions behind");
+        }
+        nextOffset = Math.max(nextOffset, lastOffset.get() - history.length() + 1);
+    }
+
+    // runs on the dispatcher, after every transaction before nextOffset was handed out
+    private void add(Subscriber subscriber, Long after) {
+        long latest = nextOffset - 1;
+        if (after != null && after > latest) {
+            throw new IllegalArgumentException("Event id " + epoch + "-" + after + " was never sent by the feed");
+        }
+        long from = after == null ? nextOffset : after + 1;
+        long oldestRetained = Math.max(1, lastOffset.get() - history.length() + 1);
+        if (from < oldestRetained) {
+            throw new IllegalArgumentException("Transactions after offset " + after + " are no longer retained");
+        }
+        // publishers keep overwriting the ring, so the whole replay is read before any of it is offered
+        List<Event> replay = new ArrayList<>();
+        for (long offset = from; offset < nextOffset; offset++) {
+            Event event = history.get(slot(offset));
+            if (event == null || event.offset != offset) {
+                throw new IllegalArgumentException("Transactions after offset " + after + " are no longer retained");
+            }
+            if (subscriber.accountIban == null || subscriber.accountIban.equals(event.transaction.getAccountIban())) {
+                replay.add(event);
+            }
+        }
+        for (int i = 0; i < replay.size() && !subscriber.lagging; i++) {
+            subscriber.offer(replay.get(i));
+        }
+        if (subscriber.accountIban == null) {
+            allAccountSubscribers.add(subscriber);
+        } else {
+            subscribersByAccount.computeIfAbsent(subscriber.accountIban, iban -> new HashSet<>()).add(subscriber);
+        }
+    }
+
+    // runs on the dispatcher
+    private void remove(Subscriber subscriber) {
+        boolean removed;
+        if (subscriber.accountIban == null) {
+            removed = allAccountSubscribers.remove(subscriber);
+        } else {
+            Set<Subscriber> accountSubscribers = subscribersByAccount.get(subscriber.accountIban);
+            removed = accountSubscribers != null && accountSubscribers.remove(subscriber);
+            if (accountSubscribers != null && accountSubscribers.isEmpty()) {
+                subscribersByAccount.remove(subscriber.accountIban);
+            }
+        }
+        if (removed) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private List<Subscriber> subscribers() {
+        List<Subscriber> subscribers = new ArrayList<>(allAccountSubscribers);
+        for (Set<Subscriber> accountSubscribers : subscribersByAccount.values()) {
+            subscribers.addAll(accountSubscribers);
+        }
+        return subscribers;
+    }
+
+    // an id is the epoch and the offset joined by a dash
+    private long offsetOf(String id) {
+        int separator = id.lastIndexOf('-');
+        if (separator < 0 || !id.substring(0, separator).equals(epoch)) {
+            throw new IllegalArgumentException("Event id " + id + " is from an earlier run of the feed");
+        }
+        try {
+            return Long.parseLong(id.substring(separator + 1));
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid event id: " + id, ex);
+        }
+    }
+
+    private int slot(long offset) {
+        return (int) (offset % history.length());
+    }
+
+    private static final class Event {
+        private final long offset;
+        private final Transaction transaction;
+        private volatile long lsn = UNLOGGED;
+
+        private Event(long offset, Transaction transaction) {
+            this.offset = offset;
+            this.transaction = transaction;
+        }
+    }
+
+    private final class Subscriber implements Subscription, Runnable {
+        private final String accountIban;
+        private final Sink sink;
+        private final BlockingQueue<Event> buffer = new ArrayBlockingQueue<>(bufferSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // set once the buffer overflowed; nothing more is buffered, so what is sent stays free of gaps
+        private volatile boolean lagging;
+
+        private Subscriber(String accountIban, Sink sink) {
+            this.accountIban = accountIban;
+            this.sink = sink;
+        }
+
+        // called on the dispatcher
+        private void offer(Event event) {
+            if (lagging || closed.get()) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                lagging = true;
+                lagged.increment();
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; i < MAX_SENDS_PER_RUN && !closed.get(); i++) {
+                    Event event = buffer.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    sink.send(epoch + "-" + event.offset, event.transaction);
+                }
+            } catch (IOException | RuntimeException ex) {
+                close("Failed to send to the subscriber: " + ex.getMessage());
+                return;
+            }
+            if (closed.get()) {
+                return;
+            }
+            if (lagging && buffer.isEmpty()) {
+                close("The subscriber fell more than " + bufferSize + " transactions behind");
+                return;
+            }
+            scheduled.set(false);
+            // an offer made while this run was finishing saw it scheduled and did not schedule another
+            if ((!buffer.isEmpty() || lagging) && scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (closed.compareAndSet(false, true)) {
+                detach();
+            }
+        }
+
+        private void close(String reason) {
+            if (closed.compareAndSet(false, true)) {
+                detach();
+                sink.close(reason);
+            }
+        }
+
+        private void detach() {
+            if (Thread.currentThread() == dispatcher) {
+                remove(this);
+            } else {
+                commands.add(() -> remove(this));
+            }
+        }
+    }
+
+}
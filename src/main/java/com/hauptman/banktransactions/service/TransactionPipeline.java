@@ -0,0 +1,230 @@
+package com.hauptman.banktransactions.service;
+
+import com.hauptman.banktransactions.dto.Transaction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer ingestion of new transactions, in the style of the LMAX Disruptor. Accounts are split by IBAN
+ * hash into shards that each have a pre-allocated ring buffer and one writer thread. Request threads claim a
+ * slot with one atomic increment and publish their validated transaction into it; the writer drains everything
+ * published since its last pass and hands each account's transactions to the {@link Writer} in order, so an
+ * account is debited once per batch and only ever by its shard's writer.
+ */
+final class TransactionPipeline {
+
+    interface Writer {
+        /**
+         * Creates the transactions of one account in order and returns what became of each one.
+         */
+        TransactionService.Outcome[] write(String accountIban, List<Transaction> transactions);
+    }
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+    private static final long FULL_RING_PARK_NANOS = 1_000;
+    // a stopped writer swaps this in for the next sequence, so every later claim comes out negative
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    private final Shard[] shards;
+
+    TransactionPipeline(int shardCount, int capacity, Writer writer) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Pipeline capacity must be a power of two");
+        }
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(capacity, writer);
+            Thread thread = new Thread(shards[i], "transaction-pipeline-" + i);
+            thread.setDaemon(true);
+            shards[i].thread = thread;
+            thread.start();
+        }
+    }
+
+    /**
+     * Queues the transaction on its account's shard. The future completes once the writer has applied it, not
+     * once it is durable; the outcome carries the lsn to wait for.
+     */
+    CompletableFuture<TransactionService.Outcome> submit(Transaction transaction) {
+        int hash = transaction.getAccountIban().hashCode();
+        return shards[Math.floorMod(hash ^ (hash >>> 16), shards.length)].publish(transaction);
+    }
+
+    /**
+     * Stops the writers once they have applied everything already published. A submission racing with this is
+     * either applied or refused, never left waiting. A writer that fails with an error closes the pipeline too.
+     */
+    void close() {
+        for (Shard shard : shards) {
+            shard.running = false;
+            LockSupport.unpark(shard.thread);
+        }
+    }
+
+    private static final class Slot {
+        private Transaction transaction;
+        private CompletableFuture<TransactionService.Outcome> result;
+    }
+
+    private final class Shard implements Runnable {
+        private final Slot[] slots;
+        private final int mask;
+        private final Writer writer;
+        // the sequence last published into each slot; the writer may read a slot once it holds the expected one
+        private final AtomicLongArray published;
+        private final AtomicLong claimed = new AtomicLong();
+        // every sequence below this has been applied, so its slot can be reused
+        private volatile long consumed;
+        private volatile boolean waiting;
+        private volatile boolean running = true;
+        private Thread thread;
+
+        private Shard(int capacity, Writer writer) {
+            this.slots = new Slot[capacity];
+            this.mask = capacity - 1;
+            this.writer = writer;
+            this.published = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                slots[i] = new Slot();
+                published.set(i, -1);
+            }
+        }
+
+        private CompletableFuture<TransactionService.Outcome> publish(Transaction transaction) {
+            if (!running) {
+                throw new IllegalStateException("Transaction pipeline is closed");
+            }
+            long sequence = claimed.getAndIncrement();
+            // the pipeline may have closed after the check above; a claim the writer has not sealed off is
+            // still applied, since the writer only stops once nothing is claimed past what it consumed
+            if (sequence < 0) {
+                throw new IllegalStateException("Transaction pipeline is closed");
+            }
+            // a full ring holds producers back until the writer frees the slot they claimed
+            while (sequence - slots.length >= consumed) {
+                LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+            }
+            int index = (int) sequence & mask;
+            Slot slot = slots[index];
+            CompletableFuture<TransactionService.Outcome> result = new CompletableFuture<>();
+            slot.transaction = transaction;
+            slot.result = result;
+            published.set(index, sequence);
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+            return result;
+        }
+
+        @Override
+        public void run() {
+            long next = 0;
+            while (true) {
+                long end = next;
+                while (end - next < slots.length && published.get((int) end & mask) == end) {
+                    end++;
+                }
+                if (end == next) {
+                    // a claimed slot that is not published yet is still owed a result, so the writer only stops
+                    // if it can seal the claims before anyone takes the next one
+                    if (!running && claimed.compareAndSet(next, CLOSED)) {
+                        return;
+                    }
+                    idle(next);
+                    continue;
+                }
+                try {
+                    apply(next, end);
+                } catch (Throwable ex) {
+                    fail(next, ex);
+                    throw ex;
+                }
+                next = end;
+                consumed = next;
+            }
+        }
+
+        /**
+         * The writer failed with something other than a failed write, such as an {@link Error}, and cannot be
+         * trusted to go on: the pipeline is closed, and every submission already claimed on this shard, from the
+         * first one not yet applied, fails with the error instead of waiting for a writer that is gone.
+         */
+        private void fail(long next, Throwable failure) {
+            close();
+            long last = claimed.getAndSet(CLOSED);
+            for (long sequence = next; sequence < last; sequence++) {
+                int index = (int) sequence & mask;
+                // a producer that claimed the sequence publishes it shortly, once the ring lets it
+                while (published.get(index) != sequence) {
+                    LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+                }
+                Slot slot = slots[index];
+                // slots of accounts applied before the failure already have their result
+                CompletableFuture<TransactionService.Outcome> result = slot.result;
+                slot.transaction = null;
+                slot.result = null;
+                if (result != null) {
+                    result.completeExceptionally(failure);
+                }
+                consumed = sequence + 1;
+            }
+        }
+
+        private void apply(long from, long to) {
+            Map<String, List<Slot>> slotsByAccount = new LinkedHashMap<>();
+            for (long sequence = from; sequence < to; sequence++) {
+                Slot slot = slots[(int) sequence & mask];
+                slotsByAccount.computeIfAbsent(slot.transaction.getAccountIban(), iban -> new ArrayList<>()).add(slot);
+            }
+            for (Map.Entry<String, List<Slot>> entry : slotsByAccount.entrySet()) {
+                List<Slot> accountSlots = entry.getValue();
+                List<Transaction> transactions = new ArrayList<>(accountSlots.size());
+                for (Slot slot : accountSlots) {
+                    transactions.add(slot.transaction);
+                }
+                TransactionService.Outcome[] outcomes;
+                try {
+                    outcomes = writer.write(entry.getKey(), transactions);
+                } catch (RuntimeException ex) {
+                    outcomes = new TransactionService.Outcome[accountSlots.size()];
+                    for (int i = 0; i < outcomes.length; i++) {
+                        outcomes[i] = TransactionService.Outcome.failed(ex);
+                    }
+                }
+                for (int i = 0; i < accountSlots.size(); i++) {
+                    Slot slot = accountSlots.get(i);
+                    CompletableFuture<TransactionService.Outcome> result = slot.result;
+                    slot.transaction = null;
+                    slot.result = null;
+                    result.complete(outcomes[i]);
+                }
+            }
+        }
+
+        // spins briefly, since under load the next transaction is usually a moment away, then parks until a
+        // producer publishes; the producer reads waiting after publishing and the writer reads the slot after
+        // setting it, so one of them always sees the other
+        private void idle(long next) {
+            int index = (int) next & mask;
+            for (int i = 0; i < SPINS_BEFORE_PARKING; i++) {
+                if (published.get(index) == next) {
+                    return;
+                }
+                Thread.onSpinWait();
+            }
+            waiting = true;
+            if (published.get(index) != next && running) {
+                LockSupport.park(this);
+            }
+            waiting = false;
+        }
+    }
+
+}
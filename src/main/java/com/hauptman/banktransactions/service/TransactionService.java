@@ -3,106 +3,501 @@ package com.hauptman.banktransactions.service;
 import com.hauptman.banktransactions.dto.*;
 import com.hauptman.banktransactions.exception.TransactionCreationException;
 import com.hauptman.banktransactions.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import util.ChannelType;
-import util.TransactionStatusEnum;
 
 import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 public class TransactionService {
 
     private final TransactionRepository transactionRepository;
     private final AccountService accountService;
+    private final TransactionFeed transactionFeed;
+
+    private final int maxSearchLimit;
+    private final int maxBatchSize;
+    private final Clock clock;
+    private final TransactionStatusRules statusRules;
+    // null when status caching is turned off
+    private final TransactionStatusCache statusCache;
+    // null unless creation goes through the single-writer pipeline
+    private final TransactionPipeline pipeline;
+
+    private final Timer createTimer;
+    private final Timer createBatchTimer;
+    private final Timer transferTimer;
+    private final Timer searchTimer;
+    private final Timer statusTimer;
+    private final Timer statusBatchTimer;
+    private final Counter invalidStatusLookups;
 
     @Autowired
-    public TransactionService(TransactionRepository transactionRepository, AccountService accountService) {
+    public TransactionService(TransactionRepository transactionRepository, AccountService accountService,
+                              TransactionFeed transactionFeed,
+                              @Value("${transactions.search.max-limit:1000}") int maxSearchLimit,
+                              @Value("${transactions.batch.max-size:1000}") int maxBatchSize,
+                              @Value("${transactions.pipeline.shards:0}") int pipelineShards,
+                              @Value("${transactions.pipeline.capacity:1024}") int pipelineCapacity,
+                              @Value("${transactions.status.cache.max-size:10000}") int statusCacheSize,
+                              @Value("${transactions.status.cache.ttl-ms:60000}") long statusCacheTtlMs,
+                              Clock clock, MeterRegistry meterRegistry) {
+        if (pipelineShards < 0) {
+            throw new IllegalArgumentException("Pipeline shard count must not be negative");
+        }
         this.transactionRepository = transactionRepository;
         this.accountService = accountService;
+        this.transactionFeed = transactionFeed;
+        this.maxSearchLimit = maxSearchLimit;
+        this.maxBatchSize = maxBatchSize;
+        this.clock = clock;
+        this.statusRules = new TransactionStatusRules(clock);
+        this.pipeline = pipelineShards > 0
+                ? new TransactionPipeline(pipelineShards, pipelineCapacity, this::createForAccount)
+                : null;
+        this.statusCache = statusCacheSize > 0
+                ? new TransactionStatusCache(statusCacheSize, statusCacheTtlMs, meterRegistry)
+                : null;
+        this.createTimer = timer(meterRegistry, "transactions.create", "Time to validate, debit and store a transaction");
+        this.createBatchTimer = timer(meterRegistry, "transactions.create.batch", "Time to create a batch of transactions");
+        this.transferTimer = timer(meterRegistry, "transactions.transfer", "Time to move money between two accounts");
+        this.searchTimer = timer(meterRegistry, "transactions.search", "Time to search the transactions of an account");
+        this.statusTimer = timer(meterRegistry, "transactions.status", "Time to work out the status of a transaction");
+        this.statusBatchTimer = timer(meterRegistry, "transactions.status.batch", "Time to work out a batch of statuses");
+        this.invalidStatusLookups = Counter.builder("transactions.status.invalid")
+                .description("Status lookups for references that do not exist")
+                .register(meterRegistry);
     }
 
     public Transaction createTransaction(TransactionRequest request) {
-        if (request.getAccountIban() == null || request.getAccountIban().isEmpty()) {
-            throw new IllegalArgumentException("Account IBAN is required");
+        long start = System.nanoTime();
+        try {
+            Transaction transaction = toTransaction(request);
+            String accountIban = transaction.getAccountIban();
+
+            // a retried request gets the stored transaction back without the account being debited again
+            Transaction existing = transactionRepository.findByReference(transaction.getReference());
+            if (existing != null) {
+                return existing;
+            }
+
+            if (pipeline != null) {
+                Outcome outcome = pipeline.submit(transaction).join();
+                accountService.awaitDurable(outcome.lsn());
+                return outcome.get();
+            }
+
+            // the funds check, the insert and the debit happen under the account's lock
+            Money debit = transaction.getAmount().plus(transaction.getFee());
+            Transaction[] stored = new Transaction[1];
+            long[] offset = new long[1];
+            try {
+                accountService.debit(accountIban, debit, () -> {
+                    try {
+                        stored[0] = transactionRepository.create(transaction);
+                    } catch (RuntimeException ex) {
+                        throw new TransactionCreationException("Failed to create transaction", ex);
+                    }
+                    if (stored[0] != transaction) {
+                        return false;
+                    }
+                    offset[0] = transactionFeed.publish(transaction);
+                    return true;
+                });
+            } catch (IllegalArgumentException ex) {
+                // a concurrent duplicate may have been stored while this one waited for the account
+                existing = transactionRepository.findByReference(transaction.getReference());
+                if (existing != null) {
+                    return existing;
+                }
+                throw ex;
+            }
+            if (offset[0] > 0) {
+                // the debit has already waited for the log
+                transactionFeed.logged(offset[0], 0);
+            }
+
+            return stored[0];
+        } finally {
+            createTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Transaction amount must be a positive number");
+    }
+
+    /**
+     * Moves money between two accounts in one atomic change. The transfer is stored as a transaction of the
+     * source account under its reference, so a retried transfer returns the stored transaction without moving the
+     * money again, and it shows up in searches, status lookups and the feed like any other debit.
+     */
+    public Transaction transfer(TransferRequest request) {
+        long start = System.nanoTime();
+        try {
+            if (request.getFromIban() == null || request.getFromIban().isEmpty()
+                    || request.getToIban() == null || request.getToIban().isEmpty()) {
+                throw new IllegalArgumentException("Source and destination IBANs are required");
+            }
+            if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Transfer amount must be a positive number");
+            }
+            Transaction transaction = new Transaction(
+                    request.getReference() != null ? request.getReference() : UUID.randomUUID().toString(),
+                    request.getFromIban(),
+                    request.getDate() != null ? request.getDate() : LocalDateTime.now(clock),
+                    Money.of(request.getAmount()),
+                    Money.ZERO,
+                    request.getDescription() != null ? request.getDescription() : "Transfer to " + request.getToIban());
+
+            Transaction existing = transactionRepository.findByReference(transaction.getReference());
+            if (existing != null) {
+                return existing;
+            }
+
+            // both accounts are held while the transfer is stored, as a debit holds its account
+            Transaction[] stored = new Transaction[1];
+            long[] offset = new long[1];
+            try {
+                accountService.transfer(request.getFromIban(), request.getToIban(), transaction.getAmount(), () -> {
+                    try {
+                        stored[0] = transactionRepository.create(transaction);
+                    } catch (RuntimeException ex) {
+                        throw new TransactionCreationException("Failed to create transaction", ex);
+                    }
+                    if (stored[0] != transaction) {
+                        return false;
+                    }
+                    offset[0] = transactionFeed.publish(transaction);
+                    return true;
+                });
+            } catch (IllegalArgumentException ex) {
+                existing = transactionRepository.findByReference(transaction.getReference());
+                if (existing != null) {
+                    return existing;
+                }
+                throw ex;
+            }
+            if (offset[0] > 0) {
+                // the transfer has already waited for the log
+                transactionFeed.logged(offset[0], 0);
+            }
+            return stored[0];
+        } finally {
+            transferTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
-        String reference = request.getReference() != null ? request.getReference() : UUID.randomUUID().toString();
-        String accountIban = request.getAccountIban();
-        BigDecimal amount = request.getAmount();
-        BigDecimal fee = request.getFee() != null ? request.getFee() : BigDecimal.ZERO;
-        String description = request.getDescription() != null ? request.getDescription() : "";
-        LocalDateTime date = request.getDate() != null ? request.getDate() : LocalDateTime.now();
+    }
 
-        Account account = accountService.getAccountByIban(accountIban);
+    public List<TransactionBatchResult> createTransactions(List<TransactionRequest> requests) {
+        long start = System.nanoTime();
+        try {
+            if (requests.size() > maxBatchSize) {
+                throw new IllegalArgumentException("Batch size must not exceed " + maxBatchSize + " transactions");
+            }
+            TransactionBatchResult[] results = new TransactionBatchResult[requests.size()];
+            Transaction[] transactions = new Transaction[requests.size()];
+            Map<String, List<Integer>> itemsByAccount = new LinkedHashMap<>();
+            for (int i = 0; i < requests.size(); i++) {
+                TransactionRequest request = requests.get(i);
+                try {
+                    transactions[i] = toTransaction(request);
+                } catch (IllegalArgumentException ex) {
+                    // a null item in the batch has no reference to report the failure under
+                    String reference = request != null ? request.getReference() : null;
+                    results[i] = TransactionBatchResult.failed(reference, "Invalid transaction request: " + ex.getMessage());
+                    continue;
+                }
+                Transaction existing = transactionRepository.findByReference(transactions[i].getReference());
+                if (existing != null) {
+                    results[i] = TransactionBatchResult.created(existing);
+                    continue;
+                }
+                itemsByAccount.computeIfAbsent(transactions[i].getAccountIban(), iban -> new ArrayList<>()).add(i);
+            }
 
-        if (account.getBalance().subtract(amount).subtract(fee).compareTo(BigDecimal.ZERO) < 0) {
-            throw new IllegalArgumentException("Transaction not allowed: insufficient funds");
+            long lsn = 0;
+            for (Map.Entry<String, List<Integer>> entry : itemsByAccount.entrySet()) {
+                List<Integer> items = entry.getValue();
+                List<Transaction> accountTransactions = new ArrayList<>(items.size());
+                for (int item : items) {
+                    accountTransactions.add(transactions[item]);
+                }
+                Outcome[] outcomes = createForAccount(entry.getKey(), accountTransactions);
+                for (int i = 0; i < items.size(); i++) {
+                    int item = items.get(i);
+                    results[item] = toBatchResult(transactions[item].getReference(), outcomes[i]);
+                    lsn = Math.max(lsn, outcomes[i].lsn());
+                }
+            }
+            // one wait covers every account of the batch
+            accountService.awaitDurable(lsn);
+            return Arrays.asList(results);
+        } finally {
+            createBatchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
-        Transaction transaction = new Transaction(reference, accountIban, date, amount, fee, description);
+    public List<Transaction> searchTransactions(String accountIban, Sort.Direction sortDirection) {
+        long start = System.nanoTime();
+        try {
+            boolean sortAscending = sortDirection == Sort.Direction.ASC;
+            return transactionRepository.findByAccountIban(accountIban, sortAscending);
+        } finally {
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 
+    public TransactionPage searchTransactions(String accountIban, Sort.Direction sortDirection, String cursor, Integer limit) {
+        long start = System.nanoTime();
         try {
-            transactionRepository.create(transaction);
-            accountService.updateAccountBalance(accountIban, amount.negate().subtract(fee));
-        } catch (Exception ex) {
-            throw new TransactionCreationException("Failed to create transaction", ex);
+            if (limit != null && limit <= 0) {
+                throw new IllegalArgumentException("Search limit must be a positive number");
+            }
+            boolean sortAscending = sortDirection == Sort.Direction.ASC;
+            // without a limit or a cursor the whole account is returned, as it was before searches were paged
+            if (limit == null && cursor == null) {
+                return new TransactionPage(transactionRepository.findByAccountIban(accountIban, sortAscending), null);
+            }
+            int pageSize = limit == null ? maxSearchLimit : Math.min(limit, maxSearchLimit);
+            TransactionCursor after = cursor != null ? TransactionCursor.decode(cursor) : null;
+
+            // one extra row tells whether there is a next page without a second lookup
+            List<Transaction> transactions = transactionRepository.findByAccountIban(accountIban, sortAscending, after, pageSize + 1);
+            if (transactions.size() <= pageSize) {
+                return new TransactionPage(transactions, null);
+            }
+            transactions = new ArrayList<>(transactions.subList(0, pageSize));
+            String nextCursor = TransactionCursor.after(transactions.get(pageSize - 1)).encode();
+            return new TransactionPage(transactions, nextCursor);
+        } finally {
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
-        return transaction;
+    public TransactionPage searchTransactions(String accountIban, LocalDateTime from, LocalDateTime to,
+                                              Sort.Direction sortDirection, String cursor, Integer limit) {
+        long start = System.nanoTime();
+        try {
+            if (limit != null && limit <= 0) {
+                throw new IllegalArgumentException("Search limit must be a positive number");
+            }
+            if (from != null && to != null && from.isAfter(to)) {
+                throw new IllegalArgumentException("Search range must not start after it ends");
+            }
+            int pageSize = limit == null ? maxSearchLimit : Math.min(limit, maxSearchLimit);
+            boolean sortAscending = sortDirection == Sort.Direction.ASC;
+            TransactionDateCursor after = cursor != null ? TransactionDateCursor.decode(cursor) : null;
+
+            List<Transaction> transactions = transactionRepository.findByDateRange(accountIban, from, to, sortAscending, after, pageSize + 1);
+            if (transactions.size() <= pageSize) {
+                return new TransactionPage(transactions, null);
+            }
+            transactions = new ArrayList<>(transactions.subList(0, pageSize));
+            String nextCursor = TransactionDateCursor.after(transactions.get(pageSize - 1)).encode();
+            return new TransactionPage(transactions, nextCursor);
+        } finally {
+            searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
     }
 
-    public List<Transaction> searchTransactions(String accountIban, Sort.Direction sortDirection) {
+    public Stream<Transaction> streamTransactions(String accountIban, Sort.Direction sortDirection) {
         boolean sortAscending = sortDirection == Sort.Direction.ASC;
-        return transactionRepository.findByAccountIban(accountIban, sortAscending);
+        return transactionRepository.streamByAccountIban(accountIban, sortAscending);
+    }
+
+    public AccountSummary getAccountSummary(String accountIban) {
+        // fails for unknown accounts, so they are not reported as accounts without transactions
+        accountService.getAccountByIban(accountIban);
+        return transactionRepository.summarize(accountIban);
     }
 
     public TransactionStatusResponse getTransactionStatus(TransactionStatusRequest request) {
-        String reference = request.getReference();
-        ChannelType channel = request.getChannel();
+        long start = System.nanoTime();
+        try {
+            Instant now = clock.instant();
+            if (statusCache != null) {
+                TransactionStatusResponse cached = statusCache.get(request.getReference(), request.getChannel(), now.toEpochMilli());
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            Transaction transaction = transactionRepository.findByReference(request.getReference());
+            countInvalid(transaction);
+            TransactionStatusResponse response = statusRules.resolve(request.getReference(), request.getChannel(), transaction, now);
+            // unknown references are not cached, since the transaction may be created at any moment
+            if (statusCache != null && transaction != null) {
+                statusCache.put(request.getReference(), request.getChannel(), response, now.toEpochMilli(),
+                        statusRules.statusChangesAt(transaction, now));
+            }
+            return response;
+        } finally {
+            statusTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 
-        Transaction transaction = transactionRepository.findByReference(reference);
+    public List<TransactionStatusResponse> getTransactionStatuses(List<TransactionStatusRequest> requests) {
+        long start = System.nanoTime();
+        try {
+            List<String> references = new ArrayList<>(requests.size());
+            for (TransactionStatusRequest request : requests) {
+                references.add(request.getReference());
+            }
+            Map<String, Transaction> transactions = transactionRepository.findByReferences(references);
 
-        if (transaction == null) {
-            return new TransactionStatusResponse(reference, TransactionStatusEnum.INVALID, null, null);
+            List<TransactionStatusResponse> responses = new ArrayList<>(requests.size());
+            for (TransactionStatusRequest request : requests) {
+                Transaction transaction = transactions.get(request.getReference());
+                countInvalid(transaction);
+                responses.add(statusRules.resolve(request.getReference(), request.getChannel(), transaction));
+            }
+            return responses;
+        } finally {
+            statusBatchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
+    }
 
-        LocalDateTime transactionDate = transaction.getDate();
-        LocalDateTime currentDate = LocalDateTime.now();
+    @PreDestroy
+    public void close() {
+        if (pipeline != null) {
+            pipeline.close();
+        }
+    }
 
-        BigDecimal amount = transaction.getAmount();
-        BigDecimal fee = transaction.getFee();
+    /**
+     * Debits the account once for all the transactions, in order, and stores those it can cover. Returns what
+     * became of each one without waiting for the log; the outcomes carry the lsn to wait for.
+     */
+    private Outcome[] createForAccount(String accountIban, List<Transaction> transactions) {
+        Outcome[] outcomes = new Outcome[transactions.size()];
+        List<Money> debits = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            debits.add(transaction.getAmount().plus(transaction.getFee()));
+        }
+        boolean[] accepted = new boolean[transactions.size()];
+        long[] offsets = new long[transactions.size()];
+        long lsn;
+        try {
+            // every debit of the account is applied in one balance update
+            lsn = accountService.applyDebits(accountIban, debits, i -> {
+                Transaction transaction = transactions.get(i);
+                try {
+                    Transaction stored = transactionRepository.create(transaction);
+                    if (stored != transaction) {
+                        // a duplicate, earlier in the batch or from a concurrent request
+                        outcomes[i] = Outcome.created(stored, 0);
+                        return false;
+                    }
+                    offsets[i] = transactionFeed.publish(transaction);
+                    return true;
+                } catch (RuntimeException ex) {
+                    outcomes[i] = Outcome.failed(new TransactionCreationException("Failed to create transaction", ex));
+                    return false;
+                }
+            }, accepted);
+        } catch (IllegalArgumentException ex) {
+            Arrays.fill(outcomes, Outcome.failed(ex));
+            return outcomes;
+        }
 
-        if (transactionDate.isBefore(currentDate.toLocalDate().atStartOfDay())) {
-            if (channel == ChannelType.CLIENT || channel == ChannelType.ATM) {
-                return new TransactionStatusResponse(reference, TransactionStatusEnum.SETTLED, amount.subtract(fee), null);
-            } else if (channel == ChannelType.INTERNAL) {
-                return new TransactionStatusResponse(reference, TransactionStatusEnum.SETTLED, amount, fee);
+        for (int i = 0; i < outcomes.length; i++) {
+            if (offsets[i] > 0) {
+                transactionFeed.logged(offsets[i], lsn);
             }
-        } else if (transactionDate.isBefore(currentDate) || transactionDate.equals(currentDate)) {
-            if (channel == ChannelType.CLIENT || channel == ChannelType.ATM) {
-                return new TransactionStatusResponse(reference, TransactionStatusEnum.PENDING, amount.subtract(fee), null);
-            } else if (channel == ChannelType.INTERNAL) {
-                return new TransactionStatusResponse(reference, TransactionStatusEnum.PENDING, amount, fee);
+            if (accepted[i]) {
+                outcomes[i] = Outcome.created(transactions.get(i), lsn);
+            } else if (outcomes[i] == null) {
+                Transaction existing = transactionRepository.findByReference(transactions.get(i).getReference());
+                outcomes[i] = existing != null
+                        ? Outcome.created(existing, 0)
+                        : Outcome.failed(new IllegalArgumentException(AccountService.INSUFFICIENT_FUNDS));
             }
-        } else if (transactionDate.isAfter(currentDate.toLocalDate().atStartOfDay())) {
-            if (channel == ChannelType.CLIENT) {
-                return new TransactionStatusResponse(reference, TransactionStatusEnum.FUTURE, amount.subtract(fee), null);
-            } else if (channel == ChannelType.ATM) {
-                return new TransactionStatusResponse(reference, TransactionStatusEnum.PENDING, amount.subtract(fee), null);
-            } else if (channel == ChannelType.INTERNAL) {
-                return new TransactionStatusResponse(reference, TransactionStatusEnum.FUTURE, amount, fee);
+        }
+        return outcomes;
+    }
+
+    private static TransactionBatchResult toBatchResult(String reference, Outcome outcome) {
+        if (outcome.failure() == null) {
+            return TransactionBatchResult.created(outcome.transaction());
+        }
+        if (outcome.failure() instanceof TransactionCreationException) {
+            return TransactionBatchResult.failed(reference, "Failed to create transaction: " + outcome.failure().getCause().getMessage());
+        }
+        return TransactionBatchResult.failed(reference, "Invalid transaction request: " + outcome.failure().getMessage());
+    }
+
+    // histogram buckets let percentiles be aggregated across instances on the monitoring side
+    private static Timer timer(MeterRegistry meterRegistry, String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private void countInvalid(Transaction transaction) {
+        if (transaction == null) {
+            invalidStatusLookups.increment();
+        }
+    }
+
+    /**
+     * What became of a transaction handed to {@link #createForAccount}: the transaction stored under its
+     * reference, with the lsn that makes it durable, or why it was rejected.
+     */
+    record Outcome(Transaction transaction, RuntimeException failure, long lsn) {
+
+        static Outcome created(Transaction transaction, long lsn) {
+            return new Outcome(transaction, null, lsn);
+        }
+
+        static Outcome failed(RuntimeException failure) {
+            return new Outcome(null, failure, 0);
+        }
+
+        Transaction get() {
+            if (failure != null) {
+                throw failure;
             }
+            return transaction;
         }
+    }
 
-        // Should never reach this line
-        throw new IllegalStateException("Invalid transaction status");
+    private Transaction toTransaction(TransactionRequest request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Transaction is required");
+        }
+        if (request.getAccountIban() == null || request.getAccountIban().isEmpty()) {
+            throw new IllegalArgumentException("Account IBAN is required");
+        }
+        if (request.getAmount() == null || request.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Transaction amount must be a positive number");
+        }
+        String reference = request.getReference() != null ? request.getReference() : UUID.randomUUID().toString();
+        String accountIban = request.getAccountIban();
+        Money amount = Money.of(request.getAmount());
+        Money fee = request.getFee() != null ? Money.of(request.getFee()) : Money.ZERO;
+        String description = request.getDescription() != null ? request.getDescription() : "";
+        LocalDateTime date = request.getDate() != null ? request.getDate() : LocalDateTime.now(clock);
+
+        try {
+            // the debit is worked out later and the net amount by the constructor, neither may overflow
+            amount.plus(fee);
+            return new Transaction(reference, accountIban, date, amount, fee, description);
+        } catch (ArithmeticException ex) {
+            throw new IllegalArgumentException("Transaction amount and fee are out of range", ex);
+        }
     }
 
 }
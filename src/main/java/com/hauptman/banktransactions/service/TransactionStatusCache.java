@@ -0,0 +1,145 @@
+package com.hauptman.banktransactions.service;
+
+import com.hauptman.banktransactions.dto.TransactionStatusResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import util.ChannelType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Status responses by reference and channel, for clients that poll a transaction until it settles. An entry
+ * expires when the status it holds can next change or after the time to live, whichever comes first, so a
+ * cached status is never stale. The cache is split into segments by key hash, each evicting its least recently
+ * used entries past its share of the maximum size.
+ */
+final class TransactionStatusCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlMillis;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    TransactionStatusCache(int maxSize, long ttlMillis, MeterRegistry meterRegistry) {
+        if (ttlMillis <= 0) {
+            throw new IllegalArgumentException("Status cache time to live must be positive");
+        }
+        this.ttlMillis = ttlMillis;
+        int segmentSize = Math.max(1, maxSize / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+        this.hits = Counter.builder("transactions.status.cache.gets")
+                .description("Status lookups answered from the cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("transactions.status.cache.gets")
+                .description("Status lookups answered from the cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictions = Counter.builder("transactions.status.cache.evictions")
+                .description("Cached statuses dropped to stay within the maximum size")
+                .register(meterRegistry);
+        Gauge.builder("transactions.status.cache.size", this, TransactionStatusCache::size)
+                .description("Number of cached statuses")
+                .register(meterRegistry);
+    }
+
+    TransactionStatusResponse get(String reference, ChannelType channel, long nowMillis) {
+        Key key = new Key(reference, channel);
+        Entry entry = segmentFor(key).get(key);
+        if (entry == null || nowMillis >= entry.expiresAt()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.response();
+    }
+
+    /**
+     * Caches the response until {@code changesAtMillis}, the moment its status can next change, or until the
+     * time to live runs out.
+     */
+    void put(String reference, ChannelType channel, TransactionStatusResponse response, long nowMillis,
+             long changesAtMillis) {
+        long expiresAt = Math.min(changesAtMillis, nowMillis + ttlMillis);
+        if (expiresAt <= nowMillis) {
+            return;
+        }
+        Key key = new Key(reference, channel);
+        segmentFor(key).put(key, new Entry(response, expiresAt));
+    }
+
+    private int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private Segment segmentFor(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private record Key(String reference, ChannelType channel) {
+    }
+
+    private record Entry(TransactionStatusResponse response, long expiresAt) {
+    }
+
+    private final class Segment {
+        private final Lock lock = new ReentrantLock();
+        private final Map<Key, Entry> entries;
+
+        private Segment(int maxSize) {
+            // access order, so the eldest entry is the least recently used one
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        private Entry get(Key key) {
+            lock.lock();
+            try {
+                return entries.get(key);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void put(Key key, Entry entry) {
+            lock.lock();
+            try {
+                entries.put(key, entry);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return entries.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
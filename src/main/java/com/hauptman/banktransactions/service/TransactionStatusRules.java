@@ -0,0 +1,134 @@
+package com.hauptman.banktransactions.service;
+
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionStatusResponse;
+import util.ChannelType;
+import util.TransactionStatusEnum;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneOffsetTransition;
+
+/**
+ * The status rules as a table of time bucket by channel. Transaction dates are local date-times, so they are
+ * compared as seconds on the local time line against the current instant shifted by the zone offset; the start
+ * of today and that offset are worked out once and reused until the next midnight or offset change.
+ */
+class TransactionStatusRules {
+
+    private static final int BEFORE_TODAY = 0;
+    private static final int TODAY = 1;
+    private static final int AFTER_NOW = 2;
+
+    private static final Rule[][] RULES = new Rule[3][ChannelType.values().length];
+
+    static {
+        rule(BEFORE_TODAY, ChannelType.CLIENT, TransactionStatusEnum.SETTLED, true);
+        rule(BEFORE_TODAY, ChannelType.ATM, TransactionStatusEnum.SETTLED, true);
+        rule(BEFORE_TODAY, ChannelType.INTERNAL, TransactionStatusEnum.SETTLED, false);
+        rule(TODAY, ChannelType.CLIENT, TransactionStatusEnum.PENDING, true);
+        rule(TODAY, ChannelType.ATM, TransactionStatusEnum.PENDING, true);
+        rule(TODAY, ChannelType.INTERNAL, TransactionStatusEnum.PENDING, false);
+        rule(AFTER_NOW, ChannelType.CLIENT, TransactionStatusEnum.FUTURE, true);
+        rule(AFTER_NOW, ChannelType.ATM, TransactionStatusEnum.PENDING, true);
+        rule(AFTER_NOW, ChannelType.INTERNAL, TransactionStatusEnum.FUTURE, false);
+    }
+
+    private final Clock clock;
+    private volatile Day day;
+
+    TransactionStatusRules(Clock clock) {
+        this.clock = clock;
+        this.day = Day.of(clock.instant(), clock.getZone());
+    }
+
+    TransactionStatusResponse resolve(String reference, ChannelType channel, Transaction transaction) {
+        return resolve(reference, channel, transaction, clock.instant());
+    }
+
+    TransactionStatusResponse resolve(String reference, ChannelType channel, Transaction transaction, Instant now) {
+        if (transaction == null) {
+            return new TransactionStatusResponse(reference, TransactionStatusEnum.INVALID, null, null);
+        }
+        if (channel == null) {
+            throw new IllegalStateException("Invalid transaction status");
+        }
+
+        Day today = day;
+        if (now.getEpochSecond() >= today.validUntil()) {
+            today = Day.of(now, clock.getZone());
+            day = today;
+        }
+
+        LocalDateTime date = transaction.getDate();
+        long second = date.toEpochSecond(ZoneOffset.UTC);
+        long nowSecond = now.getEpochSecond() + today.offsetSeconds();
+        int bucket;
+        if (second < today.startSecond()) {
+            bucket = BEFORE_TODAY;
+        } else if (second < nowSecond || second == nowSecond && date.getNano() <= now.getNano()) {
+            bucket = TODAY;
+        } else {
+            bucket = AFTER_NOW;
+        }
+
+        Rule rule = RULES[bucket][channel.ordinal()];
+        return rule.net()
+                ? new TransactionStatusResponse(reference, rule.status(), transaction.getNetAmount(), null)
+                : new TransactionStatusResponse(reference, rule.status(), transaction.getAmount(), transaction.getFee());
+    }
+
+    /**
+     * The epoch millisecond at which the status resolved at {@code now} can next change, or
+     * {@code Long.MAX_VALUE} once it never will: when the transaction's date-time arrives, at the midnight after
+     * it, and at any offset change in between, which moves the local time line the buckets are measured on.
+     */
+    long statusChangesAt(Transaction transaction, Instant now) {
+        ZoneId zone = clock.getZone();
+        LocalDateTime date = transaction.getDate();
+        Instant change = date.atZone(zone).toInstant();
+        if (!now.isBefore(change)) {
+            change = date.toLocalDate().plusDays(1).atStartOfDay(zone).toInstant();
+            if (!now.isBefore(change)) {
+                return Long.MAX_VALUE;
+            }
+        }
+        ZoneOffsetTransition transition = zone.getRules().nextTransition(now);
+        if (transition != null && transition.getInstant().isBefore(change)) {
+            change = transition.getInstant();
+        }
+        return change.toEpochMilli();
+    }
+
+    private static void rule(int bucket, ChannelType channel, TransactionStatusEnum status, boolean net) {
+        RULES[bucket][channel.ordinal()] = new Rule(status, net);
+    }
+
+    private record Rule(TransactionStatusEnum status, boolean net) {
+    }
+
+    /**
+     * Start of the current local day, in seconds on the local time line, and the offset in force until
+     * {@code validUntil} (an epoch second).
+     */
+    private record Day(long startSecond, int offsetSeconds, long validUntil) {
+
+        static Day of(Instant now, ZoneId zone) {
+            ZonedDateTime current = now.atZone(zone);
+            LocalDate date = current.toLocalDate();
+            long validUntil = date.plusDays(1).atStartOfDay(zone).toEpochSecond();
+            ZoneOffsetTransition transition = zone.getRules().nextTransition(now);
+            if (transition != null) {
+                validUntil = Math.min(validUntil, transition.toEpochSecond());
+            }
+            return new Day(date.atStartOfDay().toEpochSecond(ZoneOffset.UTC),
+                    current.getOffset().getTotalSeconds(), validUntil);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.hauptman.banktransactions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.AccountSummary;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AccountControllerTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    public void testAccountSummary() throws Exception {
+        // given
+        String accountIban = "ES1000000000000000SUMMARY";
+        accountService.createAccount(new Account(accountIban, Money.of("1000.00")));
+        createTransaction(accountIban, new BigDecimal("100.00"), new BigDecimal("1.50"));
+        createTransaction(accountIban, new BigDecimal("20.25"), new BigDecimal("0.50"));
+        createTransaction(accountIban, new BigDecimal("300.10"), BigDecimal.ZERO);
+
+        // when
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/accounts/{iban}/summary", accountIban))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        AccountSummary summary = objectMapper.readValue(result.getResponse().getContentAsString(), AccountSummary.class);
+        assertEquals(accountIban, summary.getAccountIban());
+        assertEquals(3, summary.getTransactionCount());
+        assertEquals(0, summary.getTotalDebited().compareTo(Money.of("422.35")));
+        assertEquals(0, summary.getTotalFees().compareTo(Money.of("2.00")));
+        assertEquals(0, summary.getMinAmount().compareTo(Money.of("20.25")));
+        assertEquals(0, summary.getMaxAmount().compareTo(Money.of("300.10")));
+    }
+
+    @Test
+    public void testAccountSummaryWithoutTransactions() throws Exception {
+        // given
+        String accountIban = "ES2000000000000000SUMMARY";
+        accountService.createAccount(new Account(accountIban, Money.of("10.00")));
+
+        // when
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/accounts/{iban}/summary", accountIban))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        AccountSummary summary = objectMapper.readValue(result.getResponse().getContentAsString(), AccountSummary.class);
+        assertEquals(0, summary.getTransactionCount());
+        assertEquals(0, summary.getTotalDebited().compareTo(Money.ZERO));
+        assertNull(summary.getMinAmount());
+        assertNull(summary.getMaxAmount());
+    }
+
+    @Test
+    public void testAccountSummaryForUnknownAccount() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/accounts/{iban}/summary", "ES0000000000000000UNKNOWN"))
+                .andExpect(status().isNotFound());
+    }
+
+    private void createTransaction(String accountIban, BigDecimal amount, BigDecimal fee) {
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban(accountIban);
+        request.setAmount(amount);
+        request.setFee(fee);
+        transactionService.createTransaction(request);
+    }
+}
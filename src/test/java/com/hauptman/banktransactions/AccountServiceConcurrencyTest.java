@@ -0,0 +1,85 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.service.AccountService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class AccountServiceConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int DEBITS_PER_THREAD = 500;
+    private static final int COLD_ACCOUNTS = 1000;
+    private static final String HOT_IBAN = "ES0000000000000000000HOT";
+
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    public void testConcurrentDebitsOnHotAndColdAccounts() throws Exception {
+        // given
+        accountService.createAccount(new Account(HOT_IBAN, Money.of("10000.00")));
+        for (int i = 0; i < COLD_ACCOUNTS; i++) {
+            accountService.createAccount(new Account(coldIban(i), Money.of("100.00")));
+        }
+        AtomicInteger hotDebits = new AtomicInteger();
+        AtomicInteger rejectedHotDebits = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < DEBITS_PER_THREAD; i++) {
+                    try {
+                        accountService.debit(HOT_IBAN, Money.of("1.00"));
+                        hotDebits.incrementAndGet();
+                    } catch (IllegalArgumentException ex) {
+                        rejectedHotDebits.incrementAndGet();
+                    }
+                    accountService.debit(coldIban((thread * DEBITS_PER_THREAD + i) % COLD_ACCOUNTS), Money.of("1.00"));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then
+        assertEquals(10000, hotDebits.get());
+        assertEquals(THREADS * DEBITS_PER_THREAD - 10000, rejectedHotDebits.get());
+        assertEquals(0, accountService.getAccountByIban(HOT_IBAN).getBalance().compareTo(Money.ZERO));
+
+        Money debitsPerColdAccount = Money.ofMinorUnits(THREADS * DEBITS_PER_THREAD / COLD_ACCOUNTS * 100);
+        for (int i = 0; i < COLD_ACCOUNTS; i++) {
+            Money balance = accountService.getAccountByIban(coldIban(i)).getBalance();
+            assertEquals(0, balance.compareTo(Money.of("100.00").minus(debitsPerColdAccount)), coldIban(i));
+        }
+    }
+
+    private static String coldIban(int index) {
+        return String.format("ES00000000000000%08d", index);
+    }
+}
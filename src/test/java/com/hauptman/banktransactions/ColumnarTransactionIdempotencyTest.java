@@ -0,0 +1,7 @@
+package com.hauptman.banktransactions;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "transactions.repository.storage=columnar")
+public class ColumnarTransactionIdempotencyTest extends TransactionIdempotencyTest {
+}
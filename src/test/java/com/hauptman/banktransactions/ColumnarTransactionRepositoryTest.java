@@ -0,0 +1,137 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionCursor;
+import com.hauptman.banktransactions.dto.TransactionDateCursor;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.repository.ColumnarTransactionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ColumnarTransactionRepositoryTest {
+
+    private static final String IBAN = "ES9820385778983000760236";
+    private static final String OTHER_IBAN = "ES7921000813610123456789";
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 3, 1, 0, 0);
+
+    private final ColumnarTransactionRepository repository = new ColumnarTransactionRepository(new NoOpWriteAheadLog());
+
+    @Test
+    public void testCursorPagesFollowAmountThenReference() {
+        // given equal amounts, so the reference breaks the tie
+        Transaction a = create("page-a", IBAN, DAY, "20.00");
+        Transaction b = create("page-b", IBAN, DAY, "10.00");
+        Transaction c = create("page-c", IBAN, DAY, "10.00");
+        Transaction d = create("page-d", IBAN, DAY, "30.00");
+        create("page-other", OTHER_IBAN, DAY, "15.00");
+
+        // when
+        List<Transaction> first = repository.findByAccountIban(IBAN, true, null, 2);
+        List<Transaction> second = repository.findByAccountIban(IBAN, true, TransactionCursor.after(c), 2);
+        List<Transaction> descending = repository.findByAccountIban(IBAN, false, TransactionCursor.after(a), 10);
+        // a cursor whose transaction is not stored is positioned by its amount and reference alone
+        List<Transaction> unstored = repository.findByAccountIban(IBAN, true,
+                new TransactionCursor(Money.of("15.00"), "page-missing"), 10);
+
+        // then
+        assertEquals(Arrays.asList(b, c), first);
+        assertEquals(Arrays.asList(a, d), second);
+        assertEquals(Arrays.asList(c, b), descending);
+        assertEquals(Arrays.asList(a, d), unstored);
+    }
+
+    @Test
+    public void testDateRangesAreBoundedAndPaged() {
+        // given
+        Transaction early = create("range-early", IBAN, DAY.minusNanos(1), "10.00");
+        Transaction first = create("range-first", IBAN, DAY, "10.00");
+        Transaction tied = create("range-tied", IBAN, DAY, "20.00");
+        Transaction later = create("range-later", IBAN, DAY.plusHours(5).plusNanos(500), "5.00");
+        Transaction other = create("range-other", OTHER_IBAN, DAY.plusHours(1), "5.00");
+        Transaction next = create("range-next", IBAN, DAY.plusDays(1), "5.00");
+        create("range-undated", IBAN, null, "5.00");
+
+        // when
+        List<Transaction> day = repository.findByDateRange(IBAN, DAY, DAY.plusDays(1), true, null, 10);
+        List<Transaction> page = repository.findByDateRange(IBAN, DAY, DAY.plusDays(1), true,
+                TransactionDateCursor.after(first), 1);
+        List<Transaction> allAccounts = repository.findByDateRange(null, DAY, DAY.plusDays(1), false, null, 10);
+        List<Transaction> from = repository.findByDateRange(IBAN, DAY.plusHours(1), null, true, null, 10);
+        List<Transaction> to = repository.findByDateRange(IBAN, null, DAY, false, null, 10);
+
+        // then
+        assertEquals(Arrays.asList(first, tied, later), day);
+        assertEquals(Arrays.asList(tied), page);
+        assertEquals(Arrays.asList(later, other, tied, first), allAccounts);
+        assertEquals(Arrays.asList(later, next), from);
+        assertEquals(Arrays.asList(early), to);
+    }
+
+    @Test
+    public void testConcurrentDuplicateInsertsStoreEachReferenceOnce() throws Exception {
+        // given
+        int threads = 16;
+        int references = 500;
+        Map<String, Transaction> returned = new ConcurrentHashMap<>();
+        List<String> mismatches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        // when every thread inserts every reference, each with its own amount, so losers are told apart
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < references; i++) {
+                    Transaction stored = repository.create(new Transaction("dup" + i, i % 2 == 0 ? IBAN : OTHER_IBAN,
+                            DAY.plusSeconds(i), Money.ofMinorUnits(100 + thread), Money.ZERO, ""));
+                    Transaction previous = returned.putIfAbsent(stored.getReference(), stored);
+                    if (previous != null && !previous.equals(stored)) {
+                        mismatches.add(stored.getReference());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then every caller got the winner back, and the rows left by losing inserts are never read
+        assertTrue(mismatches.isEmpty(), mismatches.toString());
+        assertEquals(references, repository.count());
+        assertEquals(references, repository.streamAll().count());
+        assertEquals(references / 2, repository.findByAccountIban(IBAN, true).size());
+        assertEquals(references / 2, repository.findByDateRange(OTHER_IBAN, null, null, true, null, references).size());
+        assertEquals(references, repository.findByDateRange(null, null, null, true, null, references * 2).size());
+        assertEquals(references / 2, repository.summarize(IBAN).getTransactionCount());
+        for (int i = 0; i < references; i++) {
+            assertEquals(returned.get("dup" + i), repository.findByReference("dup" + i));
+        }
+    }
+
+    private Transaction create(String reference, String accountIban, LocalDateTime date, String amount) {
+        return repository.create(new Transaction(reference, accountIban, date, Money.of(amount), Money.ZERO, ""));
+    }
+
+}
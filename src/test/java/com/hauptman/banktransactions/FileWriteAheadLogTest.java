@@ -0,0 +1,153 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.persistence.FileWriteAheadLog;
+import com.hauptman.banktransactions.persistence.WriteAheadLogHealthIndicator;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.service.AccountService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class FileWriteAheadLogTest {
+
+    private static final String IBAN = "ES9820385778983000760236";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testReplayRestoresAppendedRecords() throws Exception {
+        // given
+        Transaction transaction = new Transaction("ref1", IBAN, LocalDateTime.of(2023, 3, 1, 10, 30),
+                Money.of("100.00"), Money.of("1.50"), "Groceries");
+        Account account = new Account(IBAN, Money.of("898.50"));
+
+        FileWriteAheadLog writeAheadLog = new FileWriteAheadLog(directory.toString());
+        writeAheadLog.replay(0, t -> fail(), a -> fail());
+        writeAheadLog.atomically(() -> {
+            writeAheadLog.appendTransaction(transaction);
+            writeAheadLog.appendAccount(account);
+        });
+        writeAheadLog.awaitDurable();
+        writeAheadLog.close();
+
+        // when
+        List<Transaction> transactions = new ArrayList<>();
+        List<Account> accounts = new ArrayList<>();
+        FileWriteAheadLog reopened = new FileWriteAheadLog(directory.toString());
+        reopened.replay(0, transactions::add, accounts::add);
+        reopened.close();
+
+        // then
+        assertEquals(List.of(transaction), transactions);
+        assertEquals(List.of(account), accounts);
+    }
+
+    @Test
+    public void testAbortedUnitIsNotLogged() throws Exception {
+        // given
+        FileWriteAheadLog writeAheadLog = new FileWriteAheadLog(directory.toString());
+        writeAheadLog.replay(0, t -> fail(), a -> fail());
+        assertThrows(IllegalStateException.class, () -> writeAheadLog.atomically(() -> {
+            writeAheadLog.appendAccount(new Account(IBAN, Money.of("10.00")));
+            throw new IllegalStateException("rolled back");
+        }));
+        writeAheadLog.close();
+
+        // when
+        List<Account> accounts = new ArrayList<>();
+        FileWriteAheadLog reopened = new FileWriteAheadLog(directory.toString());
+        reopened.replay(0, t -> fail(), accounts::add);
+        reopened.close();
+
+        // then
+        assertTrue(accounts.isEmpty());
+    }
+
+    @Test
+    public void testReplayDropsTornFrame() throws Exception {
+        // given
+        FileWriteAheadLog writeAheadLog = new FileWriteAheadLog(directory.toString());
+        writeAheadLog.replay(0, t -> fail(), a -> fail());
+        writeAheadLog.appendAccount(new Account(IBAN, Money.of("100.00")));
+        writeAheadLog.appendAccount(new Account(IBAN, Money.of("50.00")));
+        writeAheadLog.awaitDurable();
+        writeAheadLog.close();
+        Path segment = singleSegment();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        // when
+        List<Account> accounts = new ArrayList<>();
+        FileWriteAheadLog reopened = new FileWriteAheadLog(directory.toString());
+        reopened.replay(0, t -> fail(), accounts::add);
+        reopened.appendAccount(new Account(IBAN, Money.of("75.00")));
+        reopened.awaitDurable();
+        reopened.close();
+
+        List<Account> afterRestart = new ArrayList<>();
+        FileWriteAheadLog restarted = new FileWriteAheadLog(directory.toString());
+        restarted.replay(0, t -> fail(), afterRestart::add);
+        restarted.close();
+
+        // then
+        assertEquals(List.of(new Account(IBAN, Money.of("100.00"))), accounts);
+        assertEquals(List.of(new Account(IBAN, Money.of("100.00")), new Account(IBAN, Money.of("75.00"))),
+                afterRestart);
+    }
+
+    @Test
+    public void testWritesAreRefusedOnceTheLogHasFailed() throws Exception {
+        // given
+        FileWriteAheadLog writeAheadLog = new FileWriteAheadLog(directory.toString());
+        writeAheadLog.replay(0, t -> fail(), a -> fail());
+        AccountService accountService = new AccountService(new InMemoryAccountRepository(writeAheadLog), writeAheadLog,
+                0, new SimpleMeterRegistry());
+        WriteAheadLogHealthIndicator health = new WriteAheadLogHealthIndicator(writeAheadLog);
+        accountService.createAccount(new Account(IBAN, Money.of("100.00")));
+        assertEquals(Status.UP, health.health().getStatus());
+        // the next flush has to start a segment in a directory that is gone
+        writeAheadLog.checkpoint();
+        Files.delete(singleSegment());
+        Files.delete(directory);
+        assertThrows(UncheckedIOException.class, () -> accountService.debit(IBAN, Money.of("10.00")));
+        Money balance = accountService.getAccountByIban(IBAN).getBalance();
+
+        // when
+        assertThrows(UncheckedIOException.class, () -> accountService.debit(IBAN, Money.of("20.00")));
+        assertThrows(UncheckedIOException.class, () -> accountService.updateAccountBalance(IBAN, Money.of("5.00")));
+        writeAheadLog.close();
+
+        // then
+        assertEquals(balance, accountService.getAccountByIban(IBAN).getBalance());
+        assertEquals(Status.DOWN, health.health().getStatus());
+    }
+
+    private Path singleSegment() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.toList();
+            assertEquals(1, segments.size());
+            return segments.get(0);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.hauptman.banktransactions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hauptman.banktransactions.dto.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MoneyTest {
+
+    @Test
+    public void testAmountsAreHeldAsMinorUnits() {
+        // given
+        Money amount = Money.of("12.3");
+
+        // when
+        Money total = amount.plus(Money.of(new BigDecimal("0.15")));
+
+        // then
+        assertEquals(1230, amount.getMinorUnits());
+        assertEquals(Money.ofMinorUnits(1245), total);
+        assertEquals(new BigDecimal("12.45"), total.toBigDecimal());
+        assertEquals("12.45 EUR", total.toString());
+    }
+
+    @Test
+    public void testAmountsThatDoNotFitAreRejected() {
+        // when, then
+        assertThrows(IllegalArgumentException.class, () -> Money.of("0.001"));
+        assertThrows(IllegalArgumentException.class, () -> Money.of("100000000000000000000.00"));
+        assertThrows(ArithmeticException.class, () -> Money.ofMinorUnits(Long.MAX_VALUE).plus(Money.ofMinorUnits(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Money.ZERO.plus(Money.ofMinorUnits(100, Currency.getInstance("USD"))));
+    }
+
+    @Test
+    public void testJsonIsAPlainDecimal() throws Exception {
+        // given
+        ObjectMapper mapper = new ObjectMapper();
+
+        // when
+        String json = mapper.writeValueAsString(Money.of("99.90"));
+
+        // then
+        assertEquals("99.90", json);
+        assertEquals(Money.of("99.90"), mapper.readValue("99.9", Money.class));
+    }
+
+}
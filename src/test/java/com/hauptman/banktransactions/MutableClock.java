@@ -0,0 +1,40 @@
+package com.hauptman.banktransactions;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * A clock tests move by hand, so statuses can be checked on either side of a midnight or an offset change.
+ */
+public class MutableClock extends Clock {
+
+    private final ZoneId zone;
+    private volatile Instant instant;
+
+    public MutableClock(LocalDateTime now, ZoneId zone) {
+        this.zone = zone;
+        set(now);
+    }
+
+    public void set(LocalDateTime now) {
+        instant = now.atZone(zone).toInstant();
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+
+}
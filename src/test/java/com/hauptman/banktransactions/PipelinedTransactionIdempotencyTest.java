@@ -0,0 +1,7 @@
+package com.hauptman.banktransactions;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "transactions.pipeline.shards=2")
+public class PipelinedTransactionIdempotencyTest extends TransactionIdempotencyTest {
+}
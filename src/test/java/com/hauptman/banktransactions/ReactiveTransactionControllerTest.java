@@ -0,0 +1,133 @@
+package com.hauptman.banktransactions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hauptman.banktransactions.controller.TransactionController;
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.dto.TransactionStatusResponse;
+import com.hauptman.banktransactions.repository.AccountRepository;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import util.TransactionStatusEnum;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ReactiveTransactionControllerTest {
+    private static final String ACCOUNT_IBAN = "ES7921000813610123456789";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @BeforeEach
+    public void setup() {
+        accountRepository.save(new Account(ACCOUNT_IBAN, Money.of("1000.00")));
+    }
+
+    @Test
+    public void testCreateTransaction() throws Exception {
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban(ACCOUNT_IBAN);
+        request.setAmount(new BigDecimal("20.00"));
+        request.setFee(new BigDecimal("1.00"));
+        request.setReference("reactive-ref1");
+        request.setDate(LocalDateTime.now());
+
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.post("/reactive/transactions/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    public void testCreateTransactionWithInsufficientFunds() throws Exception {
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban(ACCOUNT_IBAN);
+        request.setAmount(new BigDecimal("5000.00"));
+
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.post("/reactive/transactions/create")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSearchTransactionsAsNdjson() throws Exception {
+        // given
+        for (int i = 0; i < 3; i++) {
+            TransactionRequest request = new TransactionRequest();
+            request.setAccountIban(ACCOUNT_IBAN);
+            request.setAmount(BigDecimal.valueOf(10 + i));
+            transactionService.createTransaction(request);
+        }
+        List<Transaction> expectedTransactions = transactionService.searchTransactions(ACCOUNT_IBAN, Sort.Direction.DESC);
+
+        // when
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.get("/reactive/transactions/search")
+                        .param("account_iban", ACCOUNT_IBAN)
+                        .param("sort_direction", "DESC"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(TransactionController.APPLICATION_NDJSON_VALUE))
+                .andReturn();
+
+        // then
+        List<Transaction> transactions = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            transactions.add(objectMapper.readValue(line, Transaction.class));
+        }
+        assertEquals(expectedTransactions, transactions);
+    }
+
+    @Test
+    public void testTransactionStatusNotFound() throws Exception {
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.get("/reactive/transactions/status")
+                        .param("reference", "reactive-unknown")
+                        .param("channel", "CLIENT"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        TransactionStatusResponse response = objectMapper.readValue(result.getResponse().getContentAsString(),
+                TransactionStatusResponse.class);
+        assertEquals(TransactionStatusEnum.INVALID, response.getStatus());
+    }
+
+}
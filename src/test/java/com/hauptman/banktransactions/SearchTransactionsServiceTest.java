@@ -1,20 +1,23 @@
 package com.hauptman.banktransactions;
 
+import com.hauptman.banktransactions.dto.Money;
 import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionPage;
 import com.hauptman.banktransactions.repository.TransactionRepository;
 import com.hauptman.banktransactions.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Sort;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @SpringBootTest
 public class SearchTransactionsServiceTest {
@@ -23,6 +26,8 @@ public class SearchTransactionsServiceTest {
     private TransactionRepository transactionRepository;
     @Autowired
     private TransactionService transactionService;
+    @Value("${transactions.search.max-limit}")
+    private int maxSearchLimit;
     private String accountIban;
     private List<Transaction> expectedTransactionsSortedAsc;
     private List<Transaction> expectedTransactionsSortedDesc;
@@ -31,13 +36,9 @@ public class SearchTransactionsServiceTest {
     public void setUp() {
         // given
         accountIban = "ES9820385778983000760236";
-        Transaction t1 = new Transaction("ref1", accountIban, LocalDateTime.now(), BigDecimal.valueOf(50), BigDecimal.ZERO, "");
-        Transaction t2 = new Transaction("ref2", accountIban, LocalDateTime.now().minusDays(2), BigDecimal.valueOf(75), BigDecimal.ZERO, "");
-        Transaction t3 = new Transaction("ref3", accountIban, LocalDateTime.now().minusDays(1), BigDecimal.valueOf(100), BigDecimal.ZERO, "");
-
-        transactionRepository.create(t1);
-        transactionRepository.create(t2);
-        transactionRepository.create(t3);
+        Transaction t1 = transactionRepository.create(new Transaction("ref1", accountIban, LocalDateTime.now(), Money.of("50.00"), Money.ZERO, ""));
+        Transaction t2 = transactionRepository.create(new Transaction("ref2", accountIban, LocalDateTime.now().minusDays(2), Money.of("75.00"), Money.ZERO, ""));
+        Transaction t3 = transactionRepository.create(new Transaction("ref3", accountIban, LocalDateTime.now().minusDays(1), Money.of("100.00"), Money.ZERO, ""));
 
         expectedTransactionsSortedAsc = Arrays.asList(t1, t2, t3);
         expectedTransactionsSortedDesc = Arrays.asList(t3, t2, t1);
@@ -60,4 +61,49 @@ public class SearchTransactionsServiceTest {
         // then
         assertEquals(expectedTransactionsSortedDesc, result);
     }
+
+    @Test
+    public void testSearchTransactionsIsOnlyPagedWhenAskedTo() {
+        // given more transactions than fit on the largest page
+        String largeIban = "ES6000491500051234567892";
+        for (int i = 0; i <= maxSearchLimit; i++) {
+            transactionRepository.create(new Transaction("large" + i, largeIban, LocalDateTime.now(),
+                    Money.ofMinorUnits(i + 1), Money.ZERO, ""));
+        }
+
+        // when
+        TransactionPage everything = transactionService.searchTransactions(largeIban, Sort.Direction.ASC, null, null);
+        TransactionPage firstPage = transactionService.searchTransactions(largeIban, Sort.Direction.ASC, null, maxSearchLimit + 1);
+        TransactionPage lastPage = transactionService.searchTransactions(largeIban, Sort.Direction.ASC, firstPage.getNextCursor(), null);
+
+        // then
+        assertEquals(maxSearchLimit + 1, everything.getTransactions().size());
+        assertNull(everything.getNextCursor());
+        assertEquals(everything.getTransactions().subList(0, maxSearchLimit), firstPage.getTransactions());
+        assertEquals(everything.getTransactions().subList(maxSearchLimit, maxSearchLimit + 1), lastPage.getTransactions());
+        assertNull(lastPage.getNextCursor());
+    }
+
+    @Test
+    public void testSearchTransactionsByDateRangePagesInDateOrder() {
+        // given
+        String rangeIban = "ES7921000813610123456789";
+        LocalDateTime day = LocalDateTime.of(2020, 3, 1, 0, 0);
+        Transaction d1 = transactionRepository.create(new Transaction("range1", rangeIban, day, Money.of("30.00"), Money.ZERO, ""));
+        Transaction d2 = transactionRepository.create(new Transaction("range2", rangeIban, day.plusHours(1), Money.of("10.00"), Money.ZERO, ""));
+        Transaction d3 = transactionRepository.create(new Transaction("range3", rangeIban, day.plusHours(2), Money.of("20.00"), Money.ZERO, ""));
+        transactionRepository.create(new Transaction("range4", rangeIban, day.plusDays(1), Money.of("40.00"), Money.ZERO, ""));
+
+        // when
+        TransactionPage first = transactionService.searchTransactions(rangeIban, day, day.plusDays(1), Sort.Direction.ASC, null, 2);
+        TransactionPage second = transactionService.searchTransactions(rangeIban, day, day.plusDays(1), Sort.Direction.ASC, first.getNextCursor(), 2);
+        TransactionPage descending = transactionService.searchTransactions(rangeIban, day.plusMinutes(1), null, Sort.Direction.DESC, null, 2);
+
+        // then
+        assertEquals(Arrays.asList(d1, d2), first.getTransactions());
+        assertEquals(Arrays.asList(d3), second.getTransactions());
+        assertNull(second.getNextCursor());
+        assertEquals("range4", descending.getTransactions().get(0).getReference());
+        assertEquals(d3, descending.getTransactions().get(1));
+    }
 }
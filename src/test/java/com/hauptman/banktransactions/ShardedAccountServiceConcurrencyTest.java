@@ -0,0 +1,7 @@
+package com.hauptman.banktransactions;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(properties = "transactions.shards.count=4")
+public class ShardedAccountServiceConcurrencyTest extends AccountServiceConcurrencyTest {
+}
@@ -0,0 +1,233 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.persistence.FileWriteAheadLog;
+import com.hauptman.banktransactions.persistence.SnapshotManager;
+import com.hauptman.banktransactions.persistence.WriteAheadLogRecovery;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotManagerTest {
+
+    private static final String IBAN = "ES9820385778983000760236";
+
+    @TempDir
+    Path directory;
+
+    private Node node;
+
+    @BeforeEach
+    public void setUp() {
+        node = new Node();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        node.close();
+    }
+
+    @Test
+    public void testRestoreLoadsTheWrittenSnapshot() throws Exception {
+        // given
+        Transaction transaction = node.pay("ref1", "100.00");
+        node.snapshotManager.snapshot();
+
+        // when
+        List<Transaction> transactions = new ArrayList<>();
+        List<Account> accounts = new ArrayList<>();
+        long lsn = restore(transactions, accounts);
+
+        // then
+        assertEquals(List.of(transaction), transactions);
+        assertEquals(List.of(new Account(IBAN, Money.of("900.00"))), accounts);
+        assertEquals(lsnOf(snapshots().get(0)), lsn);
+        assertTrue(lsn > 0);
+    }
+
+    @Test
+    public void testRestoreSkipsCorruptSnapshot() throws Exception {
+        // given
+        Transaction first = node.pay("ref1", "100.00");
+        node.snapshotManager.snapshot();
+        node.pay("ref2", "50.00");
+        node.snapshotManager.snapshot();
+        List<Path> snapshots = snapshots();
+        assertEquals(2, snapshots.size());
+        try (FileChannel channel = FileChannel.open(snapshots.get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, channel.size() / 2);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~value.get(0)}), channel.size() / 2);
+        }
+
+        // when
+        List<Transaction> transactions = new ArrayList<>();
+        List<Account> accounts = new ArrayList<>();
+        long lsn = restore(transactions, accounts);
+
+        // then the older snapshot is used
+        assertEquals(lsnOf(snapshots.get(1)), lsn);
+        assertEquals(List.of(first), transactions);
+        assertEquals(List.of(new Account(IBAN, Money.of("900.00"))), accounts);
+    }
+
+    @Test
+    public void testSnapshotRetainsTheLatestTwoAndTruncatesTheLog() throws Exception {
+        // given
+        node.pay("ref1", "100.00");
+        node.snapshotManager.snapshot();
+        node.pay("ref2", "50.00");
+        node.snapshotManager.snapshot();
+        node.pay("ref3", "25.00");
+        List<Path> segmentsBefore = segments();
+
+        // when
+        node.snapshotManager.snapshot();
+        // nothing changed since, so no further snapshot is taken
+        node.snapshotManager.snapshot();
+
+        // then
+        List<Path> snapshots = snapshots();
+        List<Path> segments = segments();
+        assertEquals(2, snapshots.size());
+        assertTrue(lsnOf(snapshots.get(0)) > lsnOf(snapshots.get(1)));
+        assertTrue(segments.size() < segmentsBefore.size());
+        assertFalse(segments.contains(segmentsBefore.get(0)));
+    }
+
+    @Test
+    public void testNoSnapshotIsTakenOnceTheLogHasFailed() throws Exception {
+        // given
+        Transaction first = node.pay("ref1", "100.00");
+        // the next flush has to start a segment in a directory that is gone
+        node.writeAheadLog.checkpoint();
+        for (Path segment : segments()) {
+            Files.delete(segment);
+        }
+        Files.delete(directory.resolve("wal"));
+        assertThrows(UncheckedIOException.class, () -> node.pay("ref2", "50.00"));
+
+        // when
+        node.snapshotManager.snapshot();
+
+        // then the write its caller saw fail is not made durable by a snapshot
+        assertTrue(snapshots().isEmpty());
+        assertEquals(first, node.transactionRepository.findByReference("ref1"));
+    }
+
+    @Test
+    public void testRecoveryReplaysTheLogTailOnTopOfTheSnapshot() throws Exception {
+        // given
+        Transaction first = node.pay("ref1", "100.00");
+        node.snapshotManager.snapshot();
+        Transaction second = node.pay("ref2", "50.00");
+        node.snapshotManager.snapshot();
+        Transaction third = node.pay("ref3", "25.00");
+        node.snapshotManager.snapshot();
+        Transaction tail = node.pay("ref4", "10.00");
+        node.close();
+
+        // when
+        Node restarted = new Node();
+        node = restarted;
+
+        // then
+        assertEquals(List.of(first, second, third, tail),
+                restarted.transactionRepository.findByAccountIban(IBAN, false).stream()
+                        .sorted(Comparator.comparing(Transaction::getReference))
+                        .collect(Collectors.toList()));
+        assertEquals(Money.of("815.00"), restarted.accountRepository.findByIban(IBAN).getBalance());
+        assertEquals(4, restarted.transactionRepository.count());
+        assertEquals(1, restarted.accountRepository.count());
+    }
+
+    private long restore(List<Transaction> transactions, List<Account> accounts) {
+        return new SnapshotManager(directory.resolve("snapshots").toString(), node.writeAheadLog,
+                node.transactionRepository, node.accountRepository).restore(transactions::add, accounts::add);
+    }
+
+    private List<Path> snapshots() throws Exception {
+        return list(directory.resolve("snapshots"), "snapshot-", Comparator.reverseOrder());
+    }
+
+    private List<Path> segments() throws Exception {
+        return list(directory.resolve("wal"), "wal-", Comparator.naturalOrder());
+    }
+
+    private static List<Path> list(Path directory, String prefix, Comparator<Path> order) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix))
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .sorted(order)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long lsnOf(Path snapshot) {
+        return Long.parseLong(snapshot.getFileName().toString().replaceAll("\\D", ""));
+    }
+
+    /**
+     * One start of the service's persistence: a log, the repositories and the snapshots, recovered the way the
+     * application context recovers them.
+     */
+    private final class Node implements AutoCloseable {
+        private final FileWriteAheadLog writeAheadLog = new FileWriteAheadLog(directory.resolve("wal").toString());
+        private final InMemoryTransactionRepository transactionRepository = new InMemoryTransactionRepository(writeAheadLog);
+        private final InMemoryAccountRepository accountRepository = new InMemoryAccountRepository(writeAheadLog);
+        private final SnapshotManager snapshotManager = new SnapshotManager(directory.resolve("snapshots").toString(),
+                writeAheadLog, transactionRepository, accountRepository);
+
+        private Node() {
+            new WriteAheadLogRecovery(writeAheadLog, transactionRepository, accountRepository,
+                    new StaticListableBeanFactory(Map.of("snapshotManager", snapshotManager))
+                            .getBeanProvider(SnapshotManager.class)).recover();
+            if (accountRepository.count() == 0) {
+                accountRepository.save(new Account(IBAN, Money.of("1000.00")));
+            }
+        }
+
+        private Transaction pay(String reference, String amount) {
+            Transaction transaction = new Transaction(reference, IBAN, LocalDateTime.of(2023, 3, 1, 10, 30),
+                    Money.of(amount), Money.ZERO, "");
+            writeAheadLog.atomically(() -> {
+                transactionRepository.create(transaction);
+                Account account = accountRepository.findByIban(IBAN);
+                accountRepository.save(new Account(IBAN, account.getBalance().minus(transaction.getAmount())));
+            });
+            writeAheadLog.awaitDurable();
+            return transaction;
+        }
+
+        @Override
+        public void close() throws Exception {
+            writeAheadLog.close();
+        }
+    }
+
+}
@@ -2,9 +2,13 @@ package com.hauptman.banktransactions;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hauptman.banktransactions.controller.TransactionController;
 import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
 import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionBatchResult;
 import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.dto.TransferRequest;
 import com.hauptman.banktransactions.repository.AccountRepository;
 import com.hauptman.banktransactions.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
@@ -12,17 +16,28 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -36,10 +51,12 @@ public class TransactionControllerTest {
     private TransactionService transactionService;
     @Autowired
     private AccountRepository accountRepository;
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborHttpMessageConverter;
 
     @BeforeEach
     public void setup() {
-        Account account1 = new Account("ES9820385778983000760236", new BigDecimal("1000.00"));
+        Account account1 = new Account("ES9820385778983000760236", Money.of("1000.00"));
         accountRepository.save(account1);
     }
 
@@ -58,6 +75,35 @@ public class TransactionControllerTest {
                 .andExpect(status().isCreated());
     }
 
+    @Test
+    public void testCreateTransactionWithCbor() throws Exception {
+        // given
+        ObjectMapper cborMapper = cborHttpMessageConverter.getObjectMapper();
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban("ES9820385778983000760236");
+        request.setAmount(new BigDecimal("12.30"));
+        request.setFee(new BigDecimal("0.15"));
+        request.setDescription("Coffee");
+        request.setReference("CBOR-1");
+        request.setDate(LocalDateTime.of(2023, 1, 1, 10, 30, 0, 500_000_000));
+
+        // when
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/create")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cborMapper.writeValueAsBytes(request)))
+                .andExpect(status().isCreated())
+                .andReturn();
+
+        // then
+        assertEquals(MediaType.APPLICATION_CBOR_VALUE, result.getResponse().getContentType());
+        Transaction transaction = cborMapper.readValue(result.getResponse().getContentAsByteArray(), Transaction.class);
+        assertEquals("CBOR-1", transaction.getReference());
+        assertEquals(request.getDate(), transaction.getDate());
+        assertEquals(request.getAmount(), transaction.getAmount().toBigDecimal());
+        assertEquals(request.getFee(), transaction.getFee().toBigDecimal());
+    }
+
     @Test
     public void testSearchTransactionsAscendingSort() throws Exception {
         // given
@@ -101,6 +147,223 @@ public class TransactionControllerTest {
 
     }
 
+    @Test
+    public void testSearchTransactionsPaginated() throws Exception {
+        // given
+        String accountIban = "ES7921000813610123456789";
+        accountRepository.save(new Account(accountIban, Money.of("1000.00")));
+        for (int i = 1; i <= 5; i++) {
+            TransactionRequest request = new TransactionRequest();
+            request.setReference("page-ref" + i);
+            request.setAccountIban(accountIban);
+            request.setAmount(BigDecimal.valueOf(10L * i));
+            request.setFee(BigDecimal.ZERO);
+            request.setDate(LocalDateTime.now());
+            transactionService.createTransaction(request);
+        }
+        List<Transaction> expectedTransactions = transactionService.searchTransactions(accountIban, Sort.Direction.DESC);
+
+        // when
+        List<Transaction> transactions = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/transactions/search")
+                    .param("account_iban", accountIban)
+                    .param("sort_direction", "DESC")
+                    .param("limit", "2")
+                    .accept(MediaType.APPLICATION_JSON);
+            if (cursor != null) {
+                request.param("cursor", cursor);
+            }
+            MvcResult result = mockMvc.perform(request)
+                    .andExpect(status().isOk())
+                    .andReturn();
+            List<Transaction> page = objectMapper.readValue(result.getResponse().getContentAsString(),
+                    new TypeReference<>() {
+                    });
+            transactions.addAll(page);
+            cursor = result.getResponse().getHeader(TransactionController.NEXT_CURSOR_HEADER);
+            pages++;
+        } while (cursor != null);
+
+        // then
+        assertEquals(3, pages);
+        assertEquals(expectedTransactions, transactions);
+    }
+
+    @Test
+    public void testSearchTransactionsWithInvalidCursor() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.get("/transactions/search")
+                        .param("account_iban", "ES9820385778983000760236")
+                        .param("cursor", "!invalid!"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testExportTransactionsAsNdjson() throws Exception {
+        // given
+        String accountIban = "ES9820385778983000760236";
+        List<Transaction> expectedTransactions = getTransactions(accountIban, "DESC");
+
+        // when
+        MvcResult asyncResult = mockMvc.perform(MockMvcRequestBuilders.get("/transactions/export")
+                        .param("account_iban", accountIban)
+                        .param("sort_direction", "DESC"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(asyncResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(TransactionController.APPLICATION_NDJSON_VALUE))
+                .andReturn();
+
+        // then every line is exactly one JSON object, and the last one is terminated too
+        String content = result.getResponse().getContentAsString();
+        assertTrue(content.endsWith("}\n"), content);
+        List<Transaction> transactions = new ArrayList<>();
+        for (String line : content.split("\n")) {
+            assertTrue(line.startsWith("{") && line.endsWith("}"), line);
+            transactions.add(objectMapper.readValue(line, Transaction.class));
+        }
+        assertEquals(expectedTransactions, transactions);
+    }
+
+    @Test
+    public void testCreateTransactionBatch() throws Exception {
+        // given
+        String accountIban = "ES6000491500051234567892";
+        accountRepository.save(new Account(accountIban, Money.of("100.00")));
+        TransactionRequest first = new TransactionRequest();
+        first.setReference("batch-ref1");
+        first.setAccountIban(accountIban);
+        first.setAmount(new BigDecimal("60.00"));
+        first.setFee(new BigDecimal("1.00"));
+        TransactionRequest insufficientFunds = new TransactionRequest();
+        insufficientFunds.setReference("batch-ref2");
+        insufficientFunds.setAccountIban(accountIban);
+        insufficientFunds.setAmount(new BigDecimal("50.00"));
+        TransactionRequest invalidAmount = new TransactionRequest();
+        invalidAmount.setReference("batch-ref3");
+        invalidAmount.setAccountIban(accountIban);
+        invalidAmount.setAmount(BigDecimal.ZERO);
+        TransactionRequest last = new TransactionRequest();
+        last.setReference("batch-ref4");
+        last.setAccountIban(accountIban);
+        last.setAmount(new BigDecimal("39.00"));
+
+        // when
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(first, insufficientFunds, invalidAmount, last))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        List<TransactionBatchResult> results = objectMapper.readValue(result.getResponse().getContentAsString(),
+                new TypeReference<>() {
+                });
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertEquals("batch-ref1", results.get(0).getTransaction().getReference());
+        assertFalse(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        assertTrue(results.get(3).isSuccess());
+        assertEquals(0, accountRepository.findByIban(accountIban).getBalance().compareTo(Money.ZERO));
+    }
+
+    @Test
+    public void testCreateTransactionBatchWithNullItem() throws Exception {
+        // given
+        String accountIban = "ES0000000000000000BATCH2";
+        accountRepository.save(new Account(accountIban, Money.of("100.00")));
+        TransactionRequest first = new TransactionRequest();
+        first.setReference("batch-null-ref1");
+        first.setAccountIban(accountIban);
+        first.setAmount(new BigDecimal("10.00"));
+        TransactionRequest last = new TransactionRequest();
+        last.setReference("batch-null-ref2");
+        last.setAccountIban(accountIban);
+        last.setAmount(new BigDecimal("20.00"));
+
+        // when
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/transactions/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Arrays.asList(first, null, last))))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        List<TransactionBatchResult> results = objectMapper.readValue(result.getResponse().getContentAsString(),
+                new TypeReference<>() {
+                });
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertNull(results.get(1).getReference());
+        assertEquals("Invalid transaction request: Transaction is required", results.get(1).getError());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(0, accountRepository.findByIban(accountIban).getBalance().compareTo(Money.of("70.00")));
+    }
+
+    @Test
+    public void testTransferBetweenAccounts() throws Exception {
+        // given
+        String fromIban = "ES9820385778983000760236";
+        String toIban = "ES0000000000000000TRNS01";
+        accountRepository.save(new Account(toIban, Money.of("10.00")));
+        TransferRequest request = new TransferRequest();
+        request.setReference("TRANSFER-1");
+        request.setFromIban(fromIban);
+        request.setToIban(toIban);
+        request.setAmount(new BigDecimal("250.00"));
+
+        // when
+        mockMvc.perform(MockMvcRequestBuilders.post("/transactions/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(MockMvcRequestBuilders.post("/transactions/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isCreated());
+        request.setReference("TRANSFER-2");
+        request.setAmount(new BigDecimal("5000.00"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/transactions/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        // then
+        assertEquals(0, accountRepository.findByIban(fromIban).getBalance().compareTo(Money.of("750.00")));
+        assertEquals(0, accountRepository.findByIban(toIban).getBalance().compareTo(Money.of("260.00")));
+    }
+
+    @Test
+    public void testTransferThatWouldOverflowTheCreditIsRejected() throws Exception {
+        // given
+        String fromIban = "ES9820385778983000760236";
+        String toIban = "ES0000000000000000TRNS02";
+        Money nearlyFull = Money.ofMinorUnits(Long.MAX_VALUE - 100);
+        accountRepository.save(new Account(toIban, nearlyFull));
+        TransferRequest request = new TransferRequest();
+        request.setReference("TRANSFER-OVERFLOW");
+        request.setFromIban(fromIban);
+        request.setToIban(toIban);
+        request.setAmount(new BigDecimal("250.00"));
+
+        // when
+        mockMvc.perform(MockMvcRequestBuilders.post("/transactions/transfer")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        // then no money moved and nothing was stored under the reference
+        assertEquals(Money.of("1000.00"), accountRepository.findByIban(fromIban).getBalance());
+        assertEquals(nearlyFull, accountRepository.findByIban(toIban).getBalance());
+        assertTrue(transactionService.searchTransactions(fromIban, Sort.Direction.ASC).stream()
+                .noneMatch(transaction -> "TRANSFER-OVERFLOW".equals(transaction.getReference())));
+    }
+
     private List<Transaction> getTransactions(String accountIban, String sortDirection) {
         TransactionRequest request1 = new TransactionRequest();
         request1.setReference("ref1");
@@ -0,0 +1,239 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionFeed;
+import com.hauptman.banktransactions.service.TransactionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"transactions.feed.buffer=8", "transactions.feed.history=100"})
+public class TransactionFeedTest {
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private AccountService accountService;
+    @Autowired
+    private TransactionFeed transactionFeed;
+
+    @Test
+    public void testSubscriberOnlyReceivesItsAccount() throws InterruptedException {
+        // given
+        String accountIban = "ES0000000000000000FEED01";
+        String otherIban = "ES0000000000000000FEED02";
+        accountService.createAccount(new Account(accountIban, Money.of("100.00")));
+        accountService.createAccount(new Account(otherIban, Money.of("100.00")));
+        RecordingSink sink = new RecordingSink(null);
+        TransactionFeed.Subscription subscription = transactionFeed.subscribe(accountIban, null, sink);
+
+        // when
+        transactionService.createTransaction(request("feed-account1", otherIban));
+        transactionService.createTransaction(request("feed-account2", accountIban));
+        transactionService.createTransaction(request("feed-account3", accountIban));
+
+        // then
+        assertEquals("feed-account2", sink.next().getReference());
+        assertEquals("feed-account3", sink.next().getReference());
+        assertNull(sink.transactions.poll(200, TimeUnit.MILLISECONDS));
+        subscription.cancel();
+    }
+
+    @Test
+    public void testResumeAfterOffsetReplaysMissedTransactions() throws InterruptedException {
+        // given
+        String accountIban = "ES0000000000000000FEED03";
+        accountService.createAccount(new Account(accountIban, Money.of("100.00")));
+        RecordingSink first = new RecordingSink(null);
+        TransactionFeed.Subscription subscription = transactionFeed.subscribe(accountIban, null, first);
+        transactionService.createTransaction(request("feed-resume1", accountIban));
+        first.next();
+        String lastId = first.ids.get(0);
+        subscription.cancel();
+
+        // when
+        transactionService.createTransaction(request("feed-resume2", accountIban));
+        transactionService.createTransaction(request("feed-resume3", accountIban));
+        RecordingSink resumed = new RecordingSink(null);
+        subscription = transactionFeed.subscribe(accountIban, lastId, resumed);
+        transactionService.createTransaction(request("feed-resume4", accountIban));
+
+        // then
+        assertEquals("feed-resume2", resumed.next().getReference());
+        assertEquals("feed-resume3", resumed.next().getReference());
+        assertEquals("feed-resume4", resumed.next().getReference());
+        assertTrue(offsetOf(resumed.ids.get(0)) > offsetOf(lastId));
+        subscription.cancel();
+    }
+
+    @Test
+    public void testOffsetNoLongerRetained() throws InterruptedException {
+        // given
+        String accountIban = "ES0000000000000000FEED04";
+        accountService.createAccount(new Account(accountIban, Money.of("1000.00")));
+        RecordingSink first = new RecordingSink(null);
+        TransactionFeed.Subscription subscription = transactionFeed.subscribe(accountIban, null, first);
+        transactionService.createTransaction(request("feed-retained", accountIban));
+        first.next();
+        subscription.cancel();
+        for (int i = 0; i < 101; i++) {
+            transactionService.createTransaction(request("feed-retained" + i, accountIban));
+        }
+
+        // when, then
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionFeed.subscribe(accountIban, first.ids.get(0), new RecordingSink(null)));
+    }
+
+    @Test
+    public void testIdsFromAnEarlierRunAreRefused() throws InterruptedException {
+        // given a feed that sent an id, and the feed that replaces it when the service restarts
+        TransactionFeed earlier = new TransactionFeed(100, 8, 10, new NoOpWriteAheadLog(), new SimpleMeterRegistry());
+        RecordingSink sink = new RecordingSink(null);
+        earlier.subscribe(null, null, sink);
+        earlier.logged(earlier.publish(transaction("feed-epoch1")), 0);
+        sink.next();
+        earlier.close();
+        TransactionFeed restarted = new TransactionFeed(100, 8, 10, new NoOpWriteAheadLog(), new SimpleMeterRegistry());
+        RecordingSink resumed = new RecordingSink(null);
+        restarted.subscribe(null, null, resumed);
+        restarted.logged(restarted.publish(transaction("feed-epoch2")), 0);
+        resumed.next();
+
+        // when, then the restarted feed has used the same offset, but the ids differ and the old one is refused
+        assertEquals(offsetOf(sink.ids.get(0)), offsetOf(resumed.ids.get(0)));
+        assertNotEquals(sink.ids.get(0), resumed.ids.get(0));
+        assertThrows(IllegalArgumentException.class,
+                () -> restarted.subscribe(null, sink.ids.get(0), new RecordingSink(null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> restarted.subscribe(null, "feed-epoch2", new RecordingSink(null)));
+        restarted.close();
+    }
+
+    @Test
+    public void testSlowSubscriberIsDisconnectedWithoutBlockingCreation() throws InterruptedException {
+        // given
+        String accountIban = "ES0000000000000000FEED05";
+        accountService.createAccount(new Account(accountIban, Money.of("1000.00")));
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingSink slow = new RecordingSink(stalled);
+        transactionFeed.subscribe(accountIban, null, slow);
+
+        // when
+        for (int i = 0; i < 50; i++) {
+            transactionService.createTransaction(request("feed-slow" + i, accountIban));
+        }
+        stalled.countDown();
+
+        // then
+        assertTrue(slow.closed.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.ids.size() < 50);
+        for (int i = 0; i < slow.ids.size(); i++) {
+            assertEquals("feed-slow" + i, slow.next().getReference());
+        }
+    }
+
+    @Test
+    public void testTransactionsAreHeldBackUntilTheyAreDurable() throws InterruptedException {
+        // given
+        AtomicLong durableLsn = new AtomicLong();
+        TransactionFeed feed = new TransactionFeed(100, 8, 10, new NoOpWriteAheadLog() {
+            @Override
+            public long durableLsn() {
+                return durableLsn.get();
+            }
+        }, new SimpleMeterRegistry());
+        RecordingSink sink = new RecordingSink(null);
+        feed.subscribe(null, null, sink);
+        long first = feed.publish(transaction("feed-durable1"));
+        long second = feed.publish(transaction("feed-durable2"));
+        feed.logged(second, 1);
+
+        // when, then nothing goes out before it is logged and on disk, nor after a transaction that is not
+        assertNull(sink.transactions.poll(200, TimeUnit.MILLISECONDS));
+        feed.logged(first, 2);
+        durableLsn.set(1);
+        assertNull(sink.transactions.poll(200, TimeUnit.MILLISECONDS));
+        durableLsn.set(2);
+        assertEquals("feed-durable1", sink.next().getReference());
+        assertEquals("feed-durable2", sink.next().getReference());
+        feed.close();
+    }
+
+    private static long offsetOf(String id) {
+        return Long.parseLong(id.substring(id.lastIndexOf('-') + 1));
+    }
+
+    private static Transaction transaction(String reference) {
+        return new Transaction(reference, "ES0000000000000000FEED06", LocalDateTime.of(2023, 3, 1, 10, 30),
+                Money.of("1.00"), Money.ZERO, "");
+    }
+
+    private static TransactionRequest request(String reference, String accountIban) {
+        TransactionRequest request = new TransactionRequest();
+        request.setReference(reference);
+        request.setAccountIban(accountIban);
+        request.setAmount(new BigDecimal("1.00"));
+        request.setFee(BigDecimal.ZERO);
+        return request;
+    }
+
+    private static final class RecordingSink implements TransactionFeed.Sink {
+        private final CountDownLatch stalled;
+        private final List<String> ids = new ArrayList<>();
+        private final BlockingQueue<Transaction> transactions = new LinkedBlockingQueue<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+
+        private RecordingSink(CountDownLatch stalled) {
+            this.stalled = stalled;
+        }
+
+        @Override
+        public void send(String id, Transaction transaction) {
+            if (stalled != null) {
+                try {
+                    // stands in for a client that stopped reading
+                    stalled.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            ids.add(id);
+            transactions.add(transaction);
+        }
+
+        @Override
+        public void close(String reason) {
+            closed.countDown();
+        }
+
+        private Transaction next() throws InterruptedException {
+            Transaction transaction = transactions.poll(5, TimeUnit.SECONDS);
+            assertTrue(transaction != null, "no transaction received from the feed");
+            return transaction;
+        }
+    }
+
+}
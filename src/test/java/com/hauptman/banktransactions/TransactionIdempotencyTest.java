@@ -0,0 +1,135 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionBatchResult;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TransactionIdempotencyTest {
+
+    private static final int THREADS = 32;
+    private static final int REFERENCES = 200;
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    public void testRetriedCreateReturnsOriginalWithoutDebitingAgain() {
+        // given
+        String accountIban = "ES0000000000000000IDEM01";
+        accountService.createAccount(new Account(accountIban, Money.of("100.00")));
+        TransactionRequest request = request("idem-single", accountIban);
+
+        // when
+        Transaction first = transactionService.createTransaction(request);
+        request.setAmount(new BigDecimal("99.00"));
+        Transaction retried = transactionService.createTransaction(request);
+
+        // then
+        assertEquals(first, retried);
+        assertEquals(0, accountService.getAccountByIban(accountIban).getBalance().compareTo(Money.of("99.00")));
+    }
+
+    @Test
+    public void testBatchWithDuplicateReferences() {
+        // given
+        String accountIban = "ES0000000000000000IDEM02";
+        accountService.createAccount(new Account(accountIban, Money.of("100.00")));
+        Transaction existing = transactionService.createTransaction(request("idem-batch1", accountIban));
+
+        // when
+        List<TransactionBatchResult> results = transactionService.createTransactions(Arrays.asList(
+                request("idem-batch1", accountIban),
+                request("idem-batch2", accountIban),
+                request("idem-batch2", accountIban)));
+
+        // then
+        assertEquals(existing, results.get(0).getTransaction());
+        assertTrue(results.get(1).isSuccess());
+        assertEquals(results.get(1).getTransaction(), results.get(2).getTransaction());
+        assertEquals(0, accountService.getAccountByIban(accountIban).getBalance().compareTo(Money.of("98.00")));
+    }
+
+    @Test
+    public void testConcurrentDuplicateSubmissions() throws Exception {
+        // given
+        String accountIban = "ES0000000000000000IDEM03";
+        accountService.createAccount(new Account(accountIban, Money.of("1000.00")));
+        Map<String, Transaction> returned = new ConcurrentHashMap<>();
+        List<String> mismatches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // when every thread submits every reference, in its own order
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            long seed = t;
+            futures.add(executor.submit(() -> {
+                List<Integer> order = new ArrayList<>();
+                for (int i = 0; i < REFERENCES; i++) {
+                    order.add(i);
+                }
+                Collections.shuffle(order, new Random(seed));
+                start.await();
+                for (int i : order) {
+                    Transaction transaction = transactionService.createTransaction(request("idem-concurrent" + i, accountIban));
+                    Transaction previous = returned.putIfAbsent(transaction.getReference(), transaction);
+                    // repositories may hand back a fresh copy, so the stored transaction is matched by value
+                    if (previous != null && !previous.equals(transaction)) {
+                        mismatches.add(transaction.getReference());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then each reference was stored and debited exactly once
+        assertTrue(mismatches.isEmpty(), mismatches.toString());
+        assertEquals(REFERENCES, returned.size());
+        assertEquals(REFERENCES, transactionService.searchTransactions(accountIban, Sort.Direction.ASC).size());
+        Money expectedBalance = Money.of("1000.00").minus(Money.ofMinorUnits(REFERENCES * 100L));
+        assertEquals(0, accountService.getAccountByIban(accountIban).getBalance().compareTo(expectedBalance));
+    }
+
+    private static TransactionRequest request(String reference, String accountIban) {
+        TransactionRequest request = new TransactionRequest();
+        request.setReference(reference);
+        request.setAccountIban(accountIban);
+        request.setAmount(BigDecimal.ONE);
+        request.setFee(BigDecimal.ZERO);
+        return request;
+    }
+}
@@ -0,0 +1,111 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionFeed;
+import com.hauptman.banktransactions.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransactionPipelineFailureTest {
+
+    private static final String IBAN = "ES9820385778983000760236";
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch fail = new CountDownLatch(1);
+    private final TransactionService transactionService = transactionService();
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+        transactionService.close();
+    }
+
+    @Test
+    public void testAnErrorInTheWriterFailsWaitingSubmissionsAndClosesThePipeline() throws Exception {
+        // given a writer held inside a write that is about to fail with an error, and submissions queued behind it
+        Future<Transaction> failing = executor.submit(() -> transactionService.createTransaction(request("ERROR")));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        List<Future<Transaction>> queued = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String reference = "QUEUED-" + i;
+            queued.add(executor.submit(() -> transactionService.createTransaction(request(reference))));
+        }
+
+        // when
+        fail.countDown();
+
+        // then nothing is left waiting for the dead writer, and later submissions are refused at once
+        Exception failure = assertThrows(Exception.class, () -> failing.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CompletionException.class, failure.getCause());
+        assertInstanceOf(StackOverflowError.class, failure.getCause().getCause());
+        for (Future<Transaction> submission : queued) {
+            // refused if it came after the pipeline closed, failed with the error if it was already queued
+            Exception queuedFailure = assertThrows(Exception.class, () -> submission.get(5, TimeUnit.SECONDS));
+            assertTrue(queuedFailure.getCause() instanceof CompletionException
+                    || queuedFailure.getCause() instanceof IllegalStateException, queuedFailure.toString());
+        }
+        assertThrows(IllegalStateException.class, () -> transactionService.createTransaction(request("LATER")));
+    }
+
+    private TransactionService transactionService() {
+        WriteAheadLog writeAheadLog = new NoOpWriteAheadLog();
+        AccountService accountService = new AccountService(new InMemoryAccountRepository(writeAheadLog), writeAheadLog,
+                0, meterRegistry);
+        accountService.createAccount(new Account(IBAN, Money.of("1000.00")));
+        InMemoryTransactionRepository transactionRepository = new InMemoryTransactionRepository(writeAheadLog) {
+            @Override
+            public Transaction create(Transaction transaction) {
+                if ("ERROR".equals(transaction.getReference())) {
+                    writing.countDown();
+                    try {
+                        fail.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new StackOverflowError();
+                }
+                return super.create(transaction);
+            }
+        };
+        return new TransactionService(transactionRepository, accountService,
+                new TransactionFeed(100, 10, 10, writeAheadLog, meterRegistry), 1000, 1000, 1, 1024, 0, 60_000,
+                Clock.systemDefaultZone(), meterRegistry);
+    }
+
+    private static TransactionRequest request(String reference) {
+        TransactionRequest request = new TransactionRequest();
+        request.setReference(reference);
+        request.setAccountIban(IBAN);
+        request.setAmount(new BigDecimal("10.00"));
+        request.setFee(BigDecimal.ZERO);
+        return request;
+    }
+
+}
@@ -0,0 +1,162 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.dto.TransactionStatusRequest;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionFeed;
+import com.hauptman.banktransactions.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import util.ChannelType;
+import util.TransactionStatusEnum;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TransactionStatusCacheTest {
+
+    private static final String IBAN = "ES9820385778983000760236";
+    private static final ZoneId MADRID = ZoneId.of("Europe/Madrid");
+    private static final long TTL_MS = 2 * 24 * 60 * 60 * 1000L;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock(LocalDateTime.of(2023, 3, 1, 12, 0), MADRID);
+    private final TransactionService transactionService = transactionService(TTL_MS);
+
+    @AfterEach
+    public void tearDown() {
+        transactionService.close();
+    }
+
+    @Test
+    public void testCachedPendingStatusSettlesAtMidnight() {
+        // given
+        create("PENDING-1", LocalDateTime.of(2023, 3, 1, 10, 0));
+        clock.set(LocalDateTime.of(2023, 3, 1, 23, 59));
+        assertEquals(TransactionStatusEnum.PENDING, status("PENDING-1"));
+
+        // when
+        clock.set(LocalDateTime.of(2023, 3, 1, 23, 59, 59, 999_000_000));
+        TransactionStatusEnum beforeMidnight = status("PENDING-1");
+        clock.set(LocalDateTime.of(2023, 3, 2, 0, 0));
+        TransactionStatusEnum atMidnight = status("PENDING-1");
+
+        // then
+        assertEquals(TransactionStatusEnum.PENDING, beforeMidnight);
+        assertEquals(TransactionStatusEnum.SETTLED, atMidnight);
+        assertEquals(1.0, gets("hit"));
+        assertEquals(2.0, gets("miss"));
+    }
+
+    @Test
+    public void testCachedFutureStatusTurnsPendingOnItsDate() {
+        // given
+        create("FUTURE-1", LocalDateTime.of(2023, 3, 2, 9, 0));
+        assertEquals(TransactionStatusEnum.FUTURE, status("FUTURE-1"));
+
+        // when
+        clock.set(LocalDateTime.of(2023, 3, 2, 8, 59, 59));
+        TransactionStatusEnum earlierThatDay = status("FUTURE-1");
+        clock.set(LocalDateTime.of(2023, 3, 2, 9, 0));
+        TransactionStatusEnum atItsTime = status("FUTURE-1");
+
+        // then
+        assertEquals(TransactionStatusEnum.FUTURE, earlierThatDay);
+        assertEquals(TransactionStatusEnum.PENDING, atItsTime);
+        assertEquals(1.0, gets("hit"));
+        assertEquals(2.0, gets("miss"));
+    }
+
+    @Test
+    public void testCachedStatusIsDroppedAtAnOffsetChange() {
+        // given Madrid moves from +01:00 to +02:00 at 02:00 on 26 March 2023
+        clock.set(LocalDateTime.of(2023, 3, 26, 1, 0));
+        create("FUTURE-2", LocalDateTime.of(2023, 3, 27, 10, 0));
+        assertEquals(TransactionStatusEnum.FUTURE, status("FUTURE-2"));
+
+        // when
+        clock.set(LocalDateTime.of(2023, 3, 26, 1, 59, 59));
+        TransactionStatusEnum beforeChange = status("FUTURE-2");
+        clock.set(LocalDateTime.of(2023, 3, 26, 3, 0));
+        TransactionStatusEnum afterChange = status("FUTURE-2");
+
+        // then
+        assertEquals(TransactionStatusEnum.FUTURE, beforeChange);
+        assertEquals(TransactionStatusEnum.FUTURE, afterChange);
+        assertEquals(1.0, gets("hit"));
+        assertEquals(2.0, gets("miss"));
+    }
+
+    @Test
+    public void testCachedStatusExpiresAfterItsTimeToLive() {
+        // given
+        TransactionService shortLived = transactionService(60_000);
+        try {
+            shortLived.createTransaction(request("SETTLED-1", LocalDateTime.of(2022, 2, 15, 10, 30)));
+            assertEquals(TransactionStatusEnum.SETTLED, status(shortLived, "SETTLED-1"));
+
+            // when
+            clock.set(LocalDateTime.of(2023, 3, 1, 12, 0, 59));
+            status(shortLived, "SETTLED-1");
+            clock.set(LocalDateTime.of(2023, 3, 1, 12, 1));
+            status(shortLived, "SETTLED-1");
+
+            // then
+            assertEquals(1.0, gets("hit"));
+            assertEquals(2.0, gets("miss"));
+        } finally {
+            shortLived.close();
+        }
+    }
+
+    private TransactionService transactionService(long ttlMs) {
+        WriteAheadLog writeAheadLog = new NoOpWriteAheadLog();
+        AccountService accountService = new AccountService(new InMemoryAccountRepository(writeAheadLog), writeAheadLog,
+                0, meterRegistry);
+        accountService.createAccount(new Account(IBAN, Money.of("1000.00")));
+        return new TransactionService(new InMemoryTransactionRepository(writeAheadLog), accountService,
+                new TransactionFeed(100, 10, 10, writeAheadLog, meterRegistry), 1000, 1000, 0, 1024, 100, ttlMs, clock,
+                meterRegistry);
+    }
+
+    private void create(String reference, LocalDateTime date) {
+        transactionService.createTransaction(request(reference, date));
+    }
+
+    private TransactionStatusEnum status(String reference) {
+        return status(transactionService, reference);
+    }
+
+    private static TransactionStatusEnum status(TransactionService service, String reference) {
+        TransactionStatusRequest request = new TransactionStatusRequest();
+        request.setReference(reference);
+        request.setChannel(ChannelType.CLIENT);
+        return service.getTransactionStatus(request).getStatus();
+    }
+
+    private static TransactionRequest request(String reference, LocalDateTime date) {
+        TransactionRequest request = new TransactionRequest();
+        request.setReference(reference);
+        request.setAccountIban(IBAN);
+        request.setDate(date);
+        request.setAmount(new BigDecimal("10.00"));
+        request.setFee(BigDecimal.ZERO);
+        return request;
+    }
+
+    private double gets(String result) {
+        return meterRegistry.counter("transactions.status.cache.gets", "result", result).count();
+    }
+
+}
@@ -1,8 +1,10 @@
 package com.hauptman.banktransactions;
 
 import com.hauptman.banktransactions.dto.*;
+import com.hauptman.banktransactions.dto.Money;
 import com.hauptman.banktransactions.service.AccountService;
 import com.hauptman.banktransactions.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -16,6 +18,7 @@ import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 public class TransactionStatusControllerTest {
@@ -23,12 +26,15 @@ public class TransactionStatusControllerTest {
     public static final String TRANSACTION_STATUS_ENDPOINT = "/transactions/status";
     public static final String TRANSACTION_STATUS_PARAMS = "?reference={reference}&channel={channel}";
     public static final String TRANSACTION_STATUS_URL = TRANSACTION_STATUS_ENDPOINT + TRANSACTION_STATUS_PARAMS;
+    public static final String TRANSACTION_STATUS_BATCH_ENDPOINT = TRANSACTION_STATUS_ENDPOINT + "/batch";
     @Autowired
     private TransactionService transactionService;
     @Autowired
     private AccountService accountService;
     @Autowired
     private TestRestTemplate testRestTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     // 1
     @Test
@@ -55,7 +61,7 @@ public class TransactionStatusControllerTest {
     @Test
     public void testTransactionSettledBeforeToday() {
         // given
-        Account account = new Account("ES123456789", new BigDecimal("200.00"));
+        Account account = new Account("ES123456789", Money.of("200.00"));
         accountService.createAccount(account);
 
         TransactionRequest request = new TransactionRequest();
@@ -91,12 +97,12 @@ public class TransactionStatusControllerTest {
         // then
         assertEquals(statusRequestClient.getReference(), responseClient.getBody().getReference());
         assertEquals(TransactionStatusEnum.SETTLED, responseClient.getBody().getStatus());
-        assertEquals(new BigDecimal("95.00"), responseClient.getBody().getAmount());
+        assertEquals(Money.of("95.00"), responseClient.getBody().getAmount());
         assertNull(responseClient.getBody().getFee());
 
         assertEquals(statusRequestATM.getReference(), responseATM.getBody().getReference());
         assertEquals(TransactionStatusEnum.SETTLED, responseATM.getBody().getStatus());
-        assertEquals(new BigDecimal("95.00"), responseATM.getBody().getAmount());
+        assertEquals(Money.of("95.00"), responseATM.getBody().getAmount());
         assertNull(responseATM.getBody().getFee());
     }
 
@@ -104,7 +110,7 @@ public class TransactionStatusControllerTest {
     @Test
     public void testTransactionSettledBeforeTodayFromInternalChannel() {
         // given
-        Account account = new Account("ES123456789", new BigDecimal("200.00"));
+        Account account = new Account("ES123456789", Money.of("200.00"));
         accountService.createAccount(account);
 
         TransactionRequest request = new TransactionRequest();
@@ -129,15 +135,15 @@ public class TransactionStatusControllerTest {
         // then
         assertEquals(statusRequest.getReference(), response.getBody().getReference());
         assertEquals(TransactionStatusEnum.SETTLED, response.getBody().getStatus());
-        assertEquals(new BigDecimal("100.00"), response.getBody().getAmount());
-        assertEquals(new BigDecimal("5.00"), response.getBody().getFee());
+        assertEquals(Money.of("100.00"), response.getBody().getAmount());
+        assertEquals(Money.of("5.00"), response.getBody().getFee());
     }
 
     // 4
     @Test
     public void testTransactionPendingTodayFromClientOrAtmChannel() {
         // given
-        Account account = new Account("ES123456789", new BigDecimal("200.00"));
+        Account account = new Account("ES123456789", Money.of("200.00"));
         accountService.createAccount(account);
 
         TransactionRequest request = new TransactionRequest();
@@ -173,12 +179,12 @@ public class TransactionStatusControllerTest {
         // then
         assertEquals(statusRequestClient.getReference(), responseClient.getBody().getReference());
         assertEquals(TransactionStatusEnum.PENDING, responseClient.getBody().getStatus());
-        assertEquals(new BigDecimal("95.00"), responseClient.getBody().getAmount());
+        assertEquals(Money.of("95.00"), responseClient.getBody().getAmount());
         assertNull(responseClient.getBody().getFee());
 
         assertEquals(statusRequestATM.getReference(), responseATM.getBody().getReference());
         assertEquals(TransactionStatusEnum.PENDING, responseATM.getBody().getStatus());
-        assertEquals(new BigDecimal("95.00"), responseATM.getBody().getAmount());
+        assertEquals(Money.of("95.00"), responseATM.getBody().getAmount());
         assertNull(responseATM.getBody().getFee());
     }
 
@@ -186,7 +192,7 @@ public class TransactionStatusControllerTest {
     @Test
     public void testTransactionPendingTodayFromInternalChannel() {
         // given
-        Account account = new Account("ES123456789", new BigDecimal("200.00"));
+        Account account = new Account("ES123456789", Money.of("200.00"));
         accountService.createAccount(account);
 
         TransactionRequest request = new TransactionRequest();
@@ -211,15 +217,15 @@ public class TransactionStatusControllerTest {
         // then
         assertEquals(statusRequest.getReference(), response.getBody().getReference());
         assertEquals(TransactionStatusEnum.PENDING, response.getBody().getStatus());
-        assertEquals(new BigDecimal("100.00"), response.getBody().getAmount());
-        assertEquals(new BigDecimal("5.00"), response.getBody().getFee());
+        assertEquals(Money.of("100.00"), response.getBody().getAmount());
+        assertEquals(Money.of("5.00"), response.getBody().getFee());
     }
 
     // 6
     @Test
     public void testTransactionFutureFromClientChannel() {
         // given
-        Account account = new Account("ES123456789", new BigDecimal("200.00"));
+        Account account = new Account("ES123456789", Money.of("200.00"));
         accountService.createAccount(account);
 
         TransactionRequest request = new TransactionRequest();
@@ -244,7 +250,7 @@ public class TransactionStatusControllerTest {
         // then
         assertEquals(statusRequest.getReference(), response.getBody().getReference());
         assertEquals(TransactionStatusEnum.FUTURE, response.getBody().getStatus());
-        assertEquals(new BigDecimal("95.00"), response.getBody().getAmount());
+        assertEquals(Money.of("95.00"), response.getBody().getAmount());
         assertNull(response.getBody().getFee());
     }
 
@@ -252,7 +258,7 @@ public class TransactionStatusControllerTest {
     @Test
     public void testTransactionFutureFromATMChannel() {
         // given
-        Account account = new Account("ES123456789", new BigDecimal("200.00"));
+        Account account = new Account("ES123456789", Money.of("200.00"));
         accountService.createAccount(account);
 
         TransactionRequest request = new TransactionRequest();
@@ -277,7 +283,7 @@ public class TransactionStatusControllerTest {
         // then
         assertEquals(statusRequest.getReference(), response.getBody().getReference());
         assertEquals(TransactionStatusEnum.PENDING, response.getBody().getStatus());
-        assertEquals(new BigDecimal("95.00"), response.getBody().getAmount());
+        assertEquals(Money.of("95.00"), response.getBody().getAmount());
         assertNull(response.getBody().getFee());
     }
 
@@ -285,7 +291,7 @@ public class TransactionStatusControllerTest {
     @Test
     public void testTransactionFutureFromInternalChannel() {
         // given
-        Account account = new Account("ES123456789", new BigDecimal("200.00"));
+        Account account = new Account("ES123456789", Money.of("200.00"));
         accountService.createAccount(account);
 
         TransactionRequest request = new TransactionRequest();
@@ -310,8 +316,106 @@ public class TransactionStatusControllerTest {
         // then
         assertEquals(statusRequest.getReference(), response.getBody().getReference());
         assertEquals(TransactionStatusEnum.FUTURE, response.getBody().getStatus());
-        assertEquals(new BigDecimal("100.00"), response.getBody().getAmount());
-        assertEquals(new BigDecimal("5.00"), response.getBody().getFee());
+        assertEquals(Money.of("100.00"), response.getBody().getAmount());
+        assertEquals(Money.of("5.00"), response.getBody().getFee());
     }
-}
 
+    // 9
+    @Test
+    public void testTransactionStatusBatch() {
+        // given
+        Account account = new Account("ES123456789", Money.of("200.00"));
+        accountService.createAccount(account);
+
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban("ES123456789");
+        request.setAmount(new BigDecimal("100.00"));
+        request.setFee(new BigDecimal("5.00"));
+        request.setDate(LocalDateTime.of(2022, 2, 15, 10, 30));
+        Transaction transaction = transactionService.createTransaction(request);
+
+        TransactionStatusRequest[] statusRequests = {
+                new TransactionStatusRequest(transaction.getReference(), ChannelType.CLIENT),
+                new TransactionStatusRequest("XXXXXX", ChannelType.CLIENT),
+                new TransactionStatusRequest(transaction.getReference(), ChannelType.INTERNAL)
+        };
+
+        // when
+        ResponseEntity<TransactionStatusResponse[]> response = testRestTemplate.postForEntity(
+                TRANSACTION_STATUS_BATCH_ENDPOINT,
+                statusRequests,
+                TransactionStatusResponse[].class
+        );
+
+        // then
+        TransactionStatusResponse[] responses = response.getBody();
+        assertEquals(3, responses.length);
+
+        assertEquals(transaction.getReference(), responses[0].getReference());
+        assertEquals(TransactionStatusEnum.SETTLED, responses[0].getStatus());
+        assertEquals(Money.of("95.00"), responses[0].getAmount());
+        assertNull(responses[0].getFee());
+
+        assertEquals("XXXXXX", responses[1].getReference());
+        assertEquals(TransactionStatusEnum.INVALID, responses[1].getStatus());
+
+        assertEquals(transaction.getReference(), responses[2].getReference());
+        assertEquals(TransactionStatusEnum.SETTLED, responses[2].getStatus());
+        assertEquals(Money.of("100.00"), responses[2].getAmount());
+        assertEquals(Money.of("5.00"), responses[2].getFee());
+    }
+
+    // 10
+    @Test
+    public void testTransactionNotFoundIsCounted() {
+        // given
+        double before = meterRegistry.counter("transactions.status.invalid").count();
+
+        // when
+        ResponseEntity<TransactionStatusResponse> response = testRestTemplate.getForEntity(
+                TRANSACTION_STATUS_URL,
+                TransactionStatusResponse.class,
+                "UNKNOWN-REFERENCE",
+                ChannelType.ATM
+        );
+
+        // then
+        assertEquals(TransactionStatusEnum.INVALID, response.getBody().getStatus());
+        assertEquals(before + 1, meterRegistry.counter("transactions.status.invalid").count());
+        assertTrue(meterRegistry.get("transactions.status").timer().count() > 0);
+    }
+
+    // 11
+    @Test
+    public void testRepeatedStatusLookupIsCached() {
+        // given
+        accountService.createAccount(new Account("ES0000000000000000CACHE1", Money.of("200.00")));
+        TransactionRequest request = new TransactionRequest();
+        request.setAccountIban("ES0000000000000000CACHE1");
+        request.setAmount(new BigDecimal("100.00"));
+        request.setFee(new BigDecimal("5.00"));
+        request.setDate(LocalDateTime.of(2022, 2, 15, 10, 30));
+        Transaction transaction = transactionService.createTransaction(request);
+        double hits = meterRegistry.counter("transactions.status.cache.gets", "result", "hit").count();
+
+        // when
+        ResponseEntity<TransactionStatusResponse> first = testRestTemplate.getForEntity(
+                TRANSACTION_STATUS_URL,
+                TransactionStatusResponse.class,
+                transaction.getReference(),
+                ChannelType.CLIENT
+        );
+        ResponseEntity<TransactionStatusResponse> second = testRestTemplate.getForEntity(
+                TRANSACTION_STATUS_URL,
+                TransactionStatusResponse.class,
+                transaction.getReference(),
+                ChannelType.CLIENT
+        );
+
+        // then
+        assertEquals(TransactionStatusEnum.SETTLED, first.getBody().getStatus());
+        assertEquals(first.getBody(), second.getBody());
+        assertEquals(hits + 1, meterRegistry.counter("transactions.status.cache.gets", "result", "hit").count());
+    }
+
+}
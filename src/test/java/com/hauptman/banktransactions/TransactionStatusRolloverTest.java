@@ -0,0 +1,157 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.dto.TransactionStatusRequest;
+import com.hauptman.banktransactions.dto.TransactionStatusResponse;
+import com.hauptman.banktransactions.dto.TransferRequest;
+import com.hauptman.banktransactions.persistence.NoOpWriteAheadLog;
+import com.hauptman.banktransactions.persistence.WriteAheadLog;
+import com.hauptman.banktransactions.repository.InMemoryAccountRepository;
+import com.hauptman.banktransactions.repository.InMemoryTransactionRepository;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionFeed;
+import com.hauptman.banktransactions.service.TransactionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import util.ChannelType;
+import util.TransactionStatusEnum;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The status rules keep the start of today and the zone offset until the next midnight or offset change. The
+ * status cache is turned off here, so every lookup goes through the rules.
+ */
+public class TransactionStatusRolloverTest {
+
+    private static final String IBAN = "ES9820385778983000760236";
+    private static final String OTHER_IBAN = "ES7921000813610123456789";
+    private static final ZoneId MADRID = ZoneId.of("Europe/Madrid");
+
+    private final MutableClock clock = new MutableClock(LocalDateTime.of(2023, 3, 1, 12, 0), MADRID);
+    private TransactionService transactionService;
+
+    @BeforeEach
+    public void setUp() {
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        WriteAheadLog writeAheadLog = new NoOpWriteAheadLog();
+        AccountService accountService = new AccountService(new InMemoryAccountRepository(writeAheadLog), writeAheadLog,
+                0, meterRegistry);
+        accountService.createAccount(new Account(IBAN, Money.of("1000.00")));
+        accountService.createAccount(new Account(OTHER_IBAN, Money.of("1000.00")));
+        transactionService = new TransactionService(new InMemoryTransactionRepository(writeAheadLog), accountService,
+                new TransactionFeed(100, 10, 10, writeAheadLog, meterRegistry), 1000, 1000, 0, 1024, 0, 60_000, clock, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        transactionService.close();
+    }
+
+    @Test
+    public void testTodayRollsOverAtMidnight() {
+        // given
+        create("TODAY", LocalDateTime.of(2023, 3, 1, 0, 0));
+        create("TOMORROW", LocalDateTime.of(2023, 3, 2, 0, 0));
+        clock.set(LocalDateTime.of(2023, 3, 1, 23, 59, 59, 999_999_999));
+        assertEquals(List.of(TransactionStatusEnum.PENDING, TransactionStatusEnum.FUTURE), statuses("TODAY", "TOMORROW"));
+
+        // when
+        clock.set(LocalDateTime.of(2023, 3, 2, 0, 0));
+        List<TransactionStatusEnum> afterMidnight = statuses("TODAY", "TOMORROW");
+
+        // then
+        assertEquals(List.of(TransactionStatusEnum.SETTLED, TransactionStatusEnum.PENDING), afterMidnight);
+    }
+
+    @Test
+    public void testOffsetIsRefreshedAtAnOffsetChange() {
+        // given Madrid moves from +01:00 to +02:00 at 02:00 on 26 March 2023, so 03:00 follows 01:59:59
+        create("AT-THREE", LocalDateTime.of(2023, 3, 26, 3, 0));
+        clock.set(LocalDateTime.of(2023, 3, 26, 1, 59, 59));
+        assertEquals(List.of(TransactionStatusEnum.FUTURE), statuses("AT-THREE"));
+
+        // when
+        clock.set(LocalDateTime.of(2023, 3, 26, 3, 0));
+        List<TransactionStatusEnum> afterChange = statuses("AT-THREE");
+
+        // then a stale +01:00 offset would still put the time at 02:00 and the transaction in the future
+        assertEquals(List.of(TransactionStatusEnum.PENDING), afterChange);
+    }
+
+    @Test
+    public void testSingleAndBatchLookupsAgreeAcrossMidnight() {
+        // given
+        create("LATE", LocalDateTime.of(2023, 3, 1, 23, 30));
+        clock.set(LocalDateTime.of(2023, 3, 2, 0, 0, 1));
+
+        // when
+        TransactionStatusEnum single = transactionService.getTransactionStatus(request("LATE")).getStatus();
+        List<TransactionStatusEnum> batch = statuses("LATE");
+
+        // then
+        assertEquals(TransactionStatusEnum.SETTLED, single);
+        assertEquals(List.of(single), batch);
+    }
+
+    @Test
+    public void testUndatedTransactionsAreDatedByTheServiceClock() {
+        // given a clock just before midnight, so a system clock would date them a day later
+        clock.set(LocalDateTime.of(2023, 3, 1, 23, 59, 59));
+        TransferRequest transfer = new TransferRequest();
+        transfer.setReference("UNDATED-TRANSFER");
+        transfer.setFromIban(IBAN);
+        transfer.setToIban(OTHER_IBAN);
+        transfer.setAmount(new BigDecimal("10.00"));
+
+        // when
+        create("UNDATED", null);
+        transactionService.transfer(transfer);
+        clock.set(LocalDateTime.of(2023, 3, 2, 0, 0));
+
+        // then both were made on 1 March and have settled
+        assertEquals(List.of(TransactionStatusEnum.SETTLED, TransactionStatusEnum.SETTLED),
+                statuses("UNDATED", "UNDATED-TRANSFER"));
+    }
+
+    private void create(String reference, LocalDateTime date) {
+        TransactionRequest request = new TransactionRequest();
+        request.setReference(reference);
+        request.setAccountIban(IBAN);
+        request.setDate(date);
+        request.setAmount(new BigDecimal("10.00"));
+        request.setFee(BigDecimal.ZERO);
+        transactionService.createTransaction(request);
+    }
+
+    private List<TransactionStatusEnum> statuses(String... references) {
+        List<TransactionStatusRequest> requests = new ArrayList<>();
+        for (String reference : references) {
+            requests.add(request(reference));
+        }
+        List<TransactionStatusEnum> statuses = new ArrayList<>();
+        for (TransactionStatusResponse response : transactionService.getTransactionStatuses(requests)) {
+            statuses.add(response.getStatus());
+        }
+        return statuses;
+    }
+
+    private static TransactionStatusRequest request(String reference) {
+        TransactionStatusRequest request = new TransactionStatusRequest();
+        request.setReference(reference);
+        request.setChannel(ChannelType.CLIENT);
+        return request;
+    }
+
+}
@@ -0,0 +1,102 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.TransferRequest;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class TransferConcurrencyTest {
+
+    private static final int THREADS = 32;
+    private static final int TRANSFERS_PER_THREAD = 500;
+    private static final int HOT_ACCOUNTS = 6;
+    private static final Money INITIAL_BALANCE = Money.of("1000.00");
+
+    @Autowired
+    private TransactionService transactionService;
+    @Autowired
+    private AccountService accountService;
+
+    @Test
+    public void testConcurrentCrossTransfersConserveTotalBalance() throws Exception {
+        // given
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            accountService.createAccount(new Account(hotIban(i), INITIAL_BALANCE));
+        }
+        Map<String, Money> expectedBalances = new ConcurrentHashMap<>();
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            expectedBalances.put(hotIban(i), INITIAL_BALANCE);
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        // when
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                SplittableRandom random = new SplittableRandom(thread);
+                start.await();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    // every pair in both directions, so opposite transfers between the same accounts race
+                    int from = random.nextInt(HOT_ACCOUNTS);
+                    int to = (from + 1 + random.nextInt(HOT_ACCOUNTS - 1)) % HOT_ACCOUNTS;
+                    Money amount = Money.ofMinorUnits(1 + random.nextInt(20_000));
+                    TransferRequest request = new TransferRequest();
+                    request.setReference("xfer-" + thread + "-" + i);
+                    request.setFromIban(hotIban(from));
+                    request.setToIban(hotIban(to));
+                    request.setAmount(amount.toBigDecimal());
+                    try {
+                        transactionService.transfer(request);
+                        expectedBalances.merge(hotIban(from), amount, Money::minus);
+                        expectedBalances.merge(hotIban(to), amount, Money::plus);
+                    } catch (IllegalArgumentException ex) {
+                        assertEquals(AccountService.INSUFFICIENT_FUNDS, ex.getMessage());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            // a deadlock shows up as a timeout instead of a hung build
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        // then
+        Money total = Money.ZERO;
+        for (int i = 0; i < HOT_ACCOUNTS; i++) {
+            Money balance = accountService.getAccountByIban(hotIban(i)).getBalance();
+            assertTrue(balance.signum() >= 0, hotIban(i));
+            assertEquals(expectedBalances.get(hotIban(i)), balance, hotIban(i));
+            total = total.plus(balance);
+        }
+        assertEquals(INITIAL_BALANCE.getMinorUnits() * HOT_ACCOUNTS, total.getMinorUnits());
+    }
+
+    private static String hotIban(int index) {
+        return String.format("ES0000000000000000XFER%02d", index);
+    }
+}
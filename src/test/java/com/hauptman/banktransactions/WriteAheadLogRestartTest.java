@@ -0,0 +1,95 @@
+package com.hauptman.banktransactions;
+
+import com.hauptman.banktransactions.dto.Account;
+import com.hauptman.banktransactions.dto.Money;
+import com.hauptman.banktransactions.dto.Transaction;
+import com.hauptman.banktransactions.dto.TransactionRequest;
+import com.hauptman.banktransactions.dto.TransferRequest;
+import com.hauptman.banktransactions.persistence.SnapshotManager;
+import com.hauptman.banktransactions.service.AccountService;
+import com.hauptman.banktransactions.service.TransactionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class WriteAheadLogRestartTest {
+
+    private static final String IBAN = "ES9820385778983000760236";
+    private static final String OTHER_IBAN = "ES7921000813610123456789";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testRestartRecoversBalancesAndTransactions() {
+        // given
+        List<Transaction> transactions;
+        List<Transaction> otherTransactions;
+        try (ConfigurableApplicationContext context = start()) {
+            AccountService accountService = context.getBean(AccountService.class);
+            TransactionService transactionService = context.getBean(TransactionService.class);
+            accountService.createAccount(new Account(IBAN, Money.of("1000.00")));
+            accountService.createAccount(new Account(OTHER_IBAN, Money.of("500.00")));
+            transactionService.createTransaction(request("ref1", IBAN, "100.00", "1.50"));
+            transactionService.transfer(transfer("ref2", IBAN, OTHER_IBAN, "200.00"));
+            // part of the state comes back from a snapshot and the rest from the log written after it
+            context.getBean(SnapshotManager.class).snapshot();
+            transactionService.createTransaction(request("ref3", OTHER_IBAN, "50.00", "0.50"));
+            transactions = transactionService.searchTransactions(IBAN, Sort.Direction.ASC);
+            otherTransactions = transactionService.searchTransactions(OTHER_IBAN, Sort.Direction.ASC);
+        }
+
+        // when
+        try (ConfigurableApplicationContext context = start()) {
+            AccountService accountService = context.getBean(AccountService.class);
+            TransactionService transactionService = context.getBean(TransactionService.class);
+
+            // then
+            assertEquals(Money.of("698.50"), accountService.getAccountByIban(IBAN).getBalance());
+            assertEquals(Money.of("649.50"), accountService.getAccountByIban(OTHER_IBAN).getBalance());
+            assertEquals(2, transactions.size());
+            assertEquals(1, otherTransactions.size());
+            assertEquals(transactions, transactionService.searchTransactions(IBAN, Sort.Direction.ASC));
+            assertEquals(otherTransactions, transactionService.searchTransactions(OTHER_IBAN, Sort.Direction.ASC));
+        }
+    }
+
+    private ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(BankTransactionsApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--transactions.wal.enabled=true",
+                        "--transactions.wal.directory=" + directory.resolve("wal"),
+                        "--transactions.snapshot.directory=" + directory.resolve("snapshots"));
+    }
+
+    private static TransactionRequest request(String reference, String accountIban, String amount, String fee) {
+        TransactionRequest request = new TransactionRequest();
+        request.setReference(reference);
+        request.setAccountIban(accountIban);
+        request.setDate(LocalDateTime.of(2023, 3, 1, 10, 30));
+        request.setAmount(new BigDecimal(amount));
+        request.setFee(new BigDecimal(fee));
+        request.setDescription("Restart");
+        return request;
+    }
+
+    private static TransferRequest transfer(String reference, String fromIban, String toIban, String amount) {
+        TransferRequest request = new TransferRequest();
+        request.setReference(reference);
+        request.setFromIban(fromIban);
+        request.setToIban(toIban);
+        request.setAmount(new BigDecimal(amount));
+        return request;
+    }
+
+}